@@ -0,0 +1,77 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// GET /todo 응답(ResponseDTO<TodoDTO>)의 JSON 과 CBOR 직렬화/역직렬화 비교.
+// 페이로드 크기는 setUp 에서 size 별로 한 번 출력한다.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CborSerializationBenchmark {
+    private static final TypeReference<ResponseDTO<TodoDTO>> RESPONSE_TYPE = new TypeReference<ResponseDTO<TodoDTO>>() {
+    };
+
+    @Param({"10", "1000", "10000"})
+    public int size;
+
+    private ObjectMapper jsonMapper;
+    private ObjectMapper cborMapper;
+    private ResponseDTO<TodoDTO> response;
+    private byte[] json;
+    private byte[] cbor;
+
+    @Setup
+    public void setUp() throws IOException {
+        jsonMapper = new ObjectMapper();
+        cborMapper = new CBORMapper();
+        List<TodoDTO> dtos = TodoBenchmarkData.entities(size).stream()
+                .map(TodoDTO::new)
+                .collect(Collectors.toList());
+        response = ResponseDTO.<TodoDTO>builder().data(dtos).build();
+        json = jsonMapper.writeValueAsBytes(response);
+        cbor = cborMapper.writeValueAsBytes(response);
+        System.out.printf("%nsize %d: json %d bytes, cbor %d bytes (%.1f%%)%n",
+                size, json.length, cbor.length, 100.0 * cbor.length / json.length);
+    }
+
+    @Benchmark
+    public byte[] serializeJson() throws IOException {
+        return jsonMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] serializeCbor() throws IOException {
+        return cborMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public ResponseDTO<TodoDTO> deserializeJson() throws IOException {
+        return jsonMapper.readValue(json, RESPONSE_TYPE);
+    }
+
+    @Benchmark
+    public ResponseDTO<TodoDTO> deserializeCbor() throws IOException {
+        return cborMapper.readValue(cbor, RESPONSE_TYPE);
+    }
+}
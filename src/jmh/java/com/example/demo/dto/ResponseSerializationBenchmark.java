@@ -0,0 +1,59 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// GET /todo 응답인 ResponseDTO<TodoDTO> 의 Jackson 직렬화/역직렬화
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseSerializationBenchmark {
+    private static final TypeReference<ResponseDTO<TodoDTO>> RESPONSE_TYPE = new TypeReference<ResponseDTO<TodoDTO>>() {
+    };
+
+    @Param({"10", "1000", "10000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private ResponseDTO<TodoDTO> response;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        List<TodoDTO> dtos = TodoBenchmarkData.entities(size).stream()
+                .map(TodoDTO::new)
+                .collect(Collectors.toList());
+        response = ResponseDTO.<TodoDTO>builder().data(dtos).build();
+        json = objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public ResponseDTO<TodoDTO> deserialize() throws IOException {
+        return objectMapper.readValue(json, RESPONSE_TYPE);
+    }
+}
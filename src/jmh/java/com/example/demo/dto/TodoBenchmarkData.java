@@ -0,0 +1,28 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.TimeOrderedIds;
+import com.example.demo.model.TodoEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// 벤치마크에서 사용하는 Todo 리스트
+final class TodoBenchmarkData {
+    private TodoBenchmarkData() {
+    }
+
+    static List<TodoEntity> entities(final int size) {
+        final UUID userId = TimeOrderedIds.next();
+        final List<TodoEntity> entities = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entities.add(TodoEntity.builder()
+                    .id(TimeOrderedIds.next())
+                    .userId(userId)
+                    .title("할 일 " + i + " - buy groceries and walk the dog")
+                    .done(i % 3 == 0)
+                    .build());
+        }
+        return entities;
+    }
+}
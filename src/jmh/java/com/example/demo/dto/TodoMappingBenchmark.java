@@ -0,0 +1,49 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.TodoEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// 컨트롤러에서 하는 TodoEntity <-> TodoDTO 변환
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TodoMappingBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int size;
+
+    private List<TodoEntity> entities;
+    private List<TodoDTO> dtos;
+
+    @Setup
+    public void setUp() {
+        entities = TodoBenchmarkData.entities(size);
+        dtos = entities.stream().map(TodoDTO::new).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<TodoDTO> entitiesToDtos() {
+        return entities.stream().map(TodoDTO::new).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<TodoEntity> dtosToEntities() {
+        return dtos.stream().map(TodoDTO::toEntity).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo.security;
+
+import com.example.demo.model.TimeOrderedIds;
+import com.example.demo.model.UserEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+// 매 요청마다 실행되는 인증 경로: 토큰 생성, 토큰 검증(캐시 히트/서명 검증), Authorization 헤더 파싱
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthBenchmark {
+    private TokenProvider tokenProvider;
+    private JwtAuthenticationFilter filter;
+    private UserEntity user;
+    private String token;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() {
+        tokenProvider = new TokenProvider();
+        filter = new JwtAuthenticationFilter();
+        user = UserEntity.builder()
+                .id(TimeOrderedIds.next())
+                .username("benchmark")
+                .build();
+        token = tokenProvider.create(user);
+
+        request = new MockHttpServletRequest("GET", "/todo");
+        request.addHeader("Authorization", "Bearer " + token);
+    }
+
+    @Benchmark
+    public String createToken() {
+        return tokenProvider.create(user);
+    }
+
+    @Benchmark
+    public String validateCached() {
+        return tokenProvider.validateAndGetUserId(token);
+    }
+
+    @Benchmark
+    public String validateUncached() {
+        return tokenProvider.verify(token).getSubject();
+    }
+
+    @Benchmark
+    public String parseBearerToken() {
+        return filter.parseBearerToken(request);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.demo.config;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.jdbc.DatabaseDriver;
+
+import javax.sql.DataSource;
+
+// spring.datasource 가 아닌 데이터베이스(레플리카, 샤드)에 spring.flyway 와 같은 마이그레이션을 실행한다.
+final class FlywayMigrations {
+
+    private FlywayMigrations() {
+    }
+
+    static void migrate(DataSource dataSource, String url) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration", "classpath:db/vendor/" + DatabaseDriver.fromJdbcUrl(url).getId())
+                .baselineOnMigrate(true)
+                .load()
+                .migrate();
+    }
+}
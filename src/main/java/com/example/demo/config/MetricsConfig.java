@@ -0,0 +1,16 @@
+package com.example.demo.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration  //   스프링 빈으로 등록
+public class MetricsConfig {
+    // 서비스 메서드에 붙인 @Timed 를 타이머로 기록한다. 메트릭에는 class, method 태그가 붙는다.
+    // 컨트롤러 엔드포인트는 스프링이 http.server.requests 로, 리포지토리는 spring.data.repository.invocations 로 기록한다.
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
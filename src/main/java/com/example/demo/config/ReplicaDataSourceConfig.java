@@ -0,0 +1,56 @@
+package com.example.demo.config;
+
+import com.example.demo.persistence.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// replica.enabled 가 true 면 spring.datasource 를 프라이머리로, replica.datasources 를 레플리카로 사용한다.
+// 읽기 전용 트랜잭션(@Transactional(readOnly = true))만 레플리카로 가고 쓰기와 트랜잭션 밖의 쿼리는 프라이머리로 간다.
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "replica.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(DataSourceProperties properties, ReplicaProperties replicaProperties) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (ReplicaProperties.Replica replica : replicaProperties.getDatasources()) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(replica.getUrl())
+                    .username(replica.getUsername())
+                    .password(replica.getPassword())
+                    .build();
+            dataSource.setPoolName("replica-" + replicas.size());
+            if (replicaProperties.isMigrate()) {
+                FlywayMigrations.migrate(dataSource, replica.getUrl());
+            }
+            replicas.add(dataSource);
+        }
+        log.info("Routing read-only transactions to {} replica(s)", replicas.size());
+        return new ReplicaRoutingDataSource(primary, replicas);
+    }
+
+    // 트랜잭션이 시작될 때가 아니라 첫 쿼리를 실행할 때 커넥션을 가져와야 읽기 전용 여부로 라우팅할 수 있다.
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
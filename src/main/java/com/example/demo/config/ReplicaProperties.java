@@ -0,0 +1,26 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// replica.* 설정. ReplicaDataSourceConfig 참고.
+@Data
+@ConfigurationProperties("replica")
+public class ReplicaProperties {
+    private boolean enabled;
+    // 유저가 쓴 뒤 이 시간 동안은 그 유저의 읽기를 프라이머리로 보낸다. 레플리카 지연보다 길게 잡는다.
+    private long readYourWritesSeconds = 5;
+    // 레플리카에도 Flyway 마이그레이션을 실행한다. 복제가 없는 로컬 H2 레플리카에서만 켠다.
+    private boolean migrate;
+    private List<Replica> datasources = new ArrayList<>();
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
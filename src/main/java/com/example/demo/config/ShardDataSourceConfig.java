@@ -0,0 +1,68 @@
+package com.example.demo.config;
+
+import com.example.demo.persistence.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// shard.enabled 가 true 면 Todo 를 유저별로 여러 데이터베이스에 나눠 저장한다.
+// spring.datasource 가 0 번 샤드이고 shard.datasources 가 1 번부터다. 유저 테이블은 0 번에만 있다.
+// 어느 샤드로 갈지는 TodoService 가 TodoShards 로 정하고, 정하지 않은 쿼리는 0 번으로 간다.
+// 샤드마다 스키마가 같아야 하므로 1 번부터는 여기서 Flyway 를 실행한다(0 번은 spring.flyway 가 한다).
+// 레플리카 라우팅(replica.enabled)과 함께 쓸 수 없다.
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "shard.enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardProperties.class)
+public class ShardDataSourceConfig {
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties,
+                                                         ShardProperties shardProperties,
+                                                         @Value("${replica.enabled:false}") boolean replicaEnabled) {
+        if (replicaEnabled) {
+            throw new IllegalStateException("shard.enabled and replica.enabled cannot be used together");
+        }
+        final int configured = shardProperties.getDatasources().size() + 1;
+        if (shardProperties.getCount() < 1 || shardProperties.getCount() > configured) {
+            throw new IllegalStateException("shard.count must be between 1 and " + configured);
+        }
+
+        List<DataSource> shards = new ArrayList<>();
+        HikariDataSource first = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        first.setPoolName("shard-0");
+        shards.add(first);
+        for (ShardProperties.Shard shard : shardProperties.getDatasources()) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(shard.getUrl())
+                    .username(shard.getUsername())
+                    .password(shard.getPassword())
+                    .build();
+            dataSource.setPoolName("shard-" + shards.size());
+            FlywayMigrations.migrate(dataSource, shard.getUrl());
+            shards.add(dataSource);
+        }
+        log.info("Routing todos to {} of {} configured shard(s)", shardProperties.getCount(), shards.size());
+        return new ShardRoutingDataSource(shards);
+    }
+
+    // 트랜잭션이 시작될 때가 아니라 첫 쿼리를 실행할 때 커넥션을 가져와야 트랜잭션 안에서 정한 샤드로 갈 수 있다.
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// shard.* 설정. ShardDataSourceConfig 참고.
+@Data
+@ConfigurationProperties("shard")
+public class ShardProperties {
+    private boolean enabled;
+    // 라우팅에 쓰는 샤드 수. spring.datasource 가 0 번, datasources 가 1 번부터다.
+    // 샤드를 늘릴 때는 datasources 를 먼저 추가하고 리밸런싱으로 복사한 다음에 count 를 올린다.
+    private int count = 1;
+    private List<Shard> datasources = new ArrayList<>();
+
+    @Data
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
@@ -1,6 +1,10 @@
 package com.example.demo.config;
 
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -21,4 +25,11 @@ public class WebMvcConfig implements WebMvcConfigurer{
             .maxAge(MAX_AGE_SECS);
     }
 
+    // Accept 나 Content-Type 이 application/cbor 면 JSON 대신 CBOR 로 주고받는다.
+    // 스프링 부트의 Jackson 설정을 그대로 사용한다. 컨버터 목록에서 JSON 이 앞에 있으므로 기본은 여전히 JSON 이다.
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
 }
@@ -3,9 +3,11 @@ package com.example.demo.config;
 import com.example.demo.security.JwtAuthenticationFilter;
 import com.example.demo.security.OAuthSuccessHandler;
 import com.example.demo.security.OAuthUserServiceImpl;
+import com.example.demo.security.RateLimitFilter;
 import com.example.demo.security.RedirectUrlCookieFilter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
@@ -25,6 +27,13 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     private OAuthSuccessHandler oAuthSuccessHandler; // Success Handler 추가
     @Autowired
     private RedirectUrlCookieFilter redirectUrlFilter;
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+    // management.server.port 가 server.port 와 다르면 actuator 는 외부에 열지 않는 별도 포트에서만 응답한다 (application-prod.yaml).
+    @Value("${management.server.port:}")
+    private String managementPort;
+    @Value("${server.port:8080}")
+    private String serverPort;
 
     @Override
     protected  void configure(HttpSecurity http) throws Exception {
@@ -40,6 +49,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
             .and()
             .authorizeRequests()    // /와 /auth/** 경로는 인증 안 해도 됨.
             .antMatchers("/", "/auth/**", "/oauth2/**").permitAll() // 엔드포인트 추가
+            .antMatchers(publicActuatorPaths()).permitAll() // 헬스 체크와 (별도 포트일 때만) 프로메테우스 수집
             .anyRequest()   // /와 /auth/** 이외의 모든 경로는 인증해야됨.
             .authenticated()
             .and()
@@ -68,6 +78,11 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 // CorsFilter.class 추가 시 반드시 org.springframework.web.filter.CorsFilter 를 import 해야 한다.
                 // 만약 스프링 시큐리티 필터 로그에서 JwtAuthenticationFilter 를 찾을 수 없다면, import 경로를 재확인하라.
         );
+        // 인증된 userId 별로 요청 수를 제한해야 하므로 jwtAuthenticationFilter 다음에 실행한다.
+        http.addFilterAfter(
+                rateLimitFilter,
+                JwtAuthenticationFilter.class
+        );
         http.addFilterBefore(   // before
                 redirectUrlFilter,
                 OAuth2AuthorizationRequestRedirectFilter.class  // 리다이렉트 되기 전에 필터를 실행
@@ -78,4 +93,13 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         // CorsFilter 다음에 반드시 실행해야 하는 것은 아니지만,
         // CorsFilter 다음이 적당한 것 같아 그렇게 설정한 것이다.
     }
+
+    // 프로메테우스 수집은 management 포트가 따로 있을 때만 인증 없이 연다.
+    // 애플리케이션과 같은 포트라면 메트릭 전체가 외부에 노출되므로 다른 경로처럼 인증해야 한다.
+    private String[] publicActuatorPaths() {
+        if (managementPort.isEmpty() || managementPort.equals(serverPort)) {
+            return new String[]{"/actuator/health"};
+        }
+        return new String[]{"/actuator/health", "/actuator/prometheus"};
+    }
 }
@@ -0,0 +1,62 @@
+package com.example.demo.controller;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// GitHub 대신 로컬에서 OAuth 로그인 흐름을 끝까지 돌려볼 수 있는 가짜 provider.
+// oauth-stub 프로파일에서만 등록되며 application-oauth-stub.yaml 이 github provider 의 URI 를 이쪽으로 돌린다.
+// authorize 요청에 login 파라미터를 붙이면 그 이름으로 로그인한다. 발급하는 access token 은 login 그 자체다.
+@RestController
+@Profile("oauth-stub")
+@RequestMapping("/oauth2/stub")
+public class OAuthStubController {
+    private static final String DEFAULT_LOGIN = "stub-user";
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    @GetMapping("/authorize")
+    public ResponseEntity<?> authorize(@RequestParam("redirect_uri") String redirectUri,
+                                       @RequestParam("state") String state,
+                                       @RequestParam(value = "login", defaultValue = DEFAULT_LOGIN) String login) {
+        // 사용자 동의 화면 없이 바로 callback 으로 돌려보낸다. code 에 login 을 담는다.
+        String location = UriComponentsBuilder.fromUriString(redirectUri)
+                .queryParam("code", login)
+                .queryParam("state", state)
+                .build()
+                .toUriString();
+        return ResponseEntity.status(HttpStatus.FOUND).header(HttpHeaders.LOCATION, location).build();
+    }
+
+    @PostMapping("/token")
+    public Map<String, Object> token(@RequestParam("code") String code) {
+        Map<String, Object> token = new LinkedHashMap<>();
+        token.put("access_token", code);
+        token.put("token_type", "bearer");
+        token.put("scope", "read:user");
+        return token;
+    }
+
+    @GetMapping("/user")
+    public ResponseEntity<?> user(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        String login = authorization.substring(BEARER_PREFIX.length());
+        // GitHub 의 user-name-attribute 는 id 이므로 login 에서 안정적인 숫자 id 를 만든다.
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("id", Integer.toUnsignedLong(login.hashCode()));
+        user.put("login", login);
+        return ResponseEntity.ok(user);
+    }
+}
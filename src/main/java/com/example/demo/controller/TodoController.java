@@ -2,28 +2,88 @@ package com.example.demo.controller;
 
 
 import com.example.demo.dto.ResponseDTO;
+import com.example.demo.dto.TodoBatchItemDTO;
+import com.example.demo.dto.TodoBatchResultDTO;
+import com.example.demo.dto.TodoCursor;
 import com.example.demo.dto.TodoDTO;
+import com.example.demo.dto.TodoImportProgressDTO;
+import com.example.demo.model.TimeOrderedIds;
 import com.example.demo.model.TodoEntity;
+import com.example.demo.security.TokenProvider;
+import com.example.demo.service.TodoEventBroker;
+import com.example.demo.service.TodoExecutor;
 import com.example.demo.service.TodoService;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("todo")
 public class TodoController {
+    // 페이지네이션 시 한 번에 내려줄 수 있는 최대 개수와 limit 없이 after 만 넘어온 경우의 기본 개수
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    // 헤더나 mode 파라미터로 delta 를 넘기면 생성/수정/삭제 후 리스트 전체 대신 바뀐 항목과 리스트 버전만 내려준다.
+    private static final String RESPONSE_MODE_HEADER = "X-Response-Mode";
+    private static final String DELTA_MODE = "delta";
+    // 한 줄에 JSON 값 하나 (GET /todo/export, POST /todo/import)
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final MediaType NDJSON = MediaType.parseMediaType(NDJSON_VALUE);
+
     // testTodo 메서드 작성
 
     @Autowired
     private TodoService service;
+    // 데이터베이스 작업을 톰캣 스레드 대신 제한된 전용 스레드 풀에서 실행한다. 풀이 가득 차면 503 을 리턴한다.
+    @Autowired
+    private TodoExecutor executor;
+
+    @Autowired
+    private TodoEventBroker events;
+
+    @Autowired
+    private TokenProvider tokenProvider;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
 
     @GetMapping("/test")
-    public ResponseEntity<?> testTodo(){
+    public CompletableFuture<ResponseEntity<?>> testTodo(){
+        return async(this::handleTest);
+    }
+
+    private ResponseEntity<?> handleTest(){
         String str = service.testService(); // 테스트 서비스 사용
         List<String> list = new ArrayList<>();
         list.add(str);
@@ -32,7 +92,13 @@ public class TodoController {
     }
 
     @PostMapping
-    public ResponseEntity<?> createTodo(@AuthenticationPrincipal String userId, @RequestBody TodoDTO dto){
+    public CompletableFuture<ResponseEntity<?>> createTodo(@AuthenticationPrincipal String userId, @RequestBody TodoDTO dto,
+                                                           @RequestHeader(value = RESPONSE_MODE_HEADER, required = false) String modeHeader,
+                                                           @RequestParam(required = false) String mode){
+        return async(() -> handleCreate(userId, dto, modeHeader, mode));
+    }
+
+    private ResponseEntity<?> handleCreate(String userId, TodoDTO dto, String modeHeader, String mode){
         try {
             //  String temporaryUserId = "temporary-user";  // temporary user id.
 
@@ -45,7 +111,12 @@ public class TodoController {
             // (3) 임시 유저 아이디를 설정해준다. 지금은 인증과 인가 기능이 없으므로 한 유저(temporaryUserId)만 로그인 없이 사용 가능한 애플리케이션인 셈이다.
             // entity.setUserId(temporaryUserId);
             // -> (3) Authentication Bearer Token 을 통해 받은 userId를 넘긴다.
-            entity.setUserId(userId);
+            entity.setUserId(TimeOrderedIds.parse(userId));
+
+            // delta 모드라면 생성된 Todo 만 리턴한다.
+            if(isDelta(modeHeader, mode)){
+                return deltaResponse(userId, Optional.of(service.createItem(entity)));
+            }
 
             // (4) 서비스를 이용해 Todo 엔티티를 생성한다.
             List<TodoEntity> entities = service.create(entity);
@@ -67,7 +138,209 @@ public class TodoController {
     }
 
     @GetMapping
-    public ResponseEntity<?> retrieveTodoList(@AuthenticationPrincipal String userId) {
+    public CompletableFuture<ResponseEntity<?>> retrieveTodoList(@AuthenticationPrincipal String userId,
+                                                                 @RequestParam(required = false) Integer limit,
+                                                                 @RequestParam(required = false) String after,
+                                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // 리스트 버전을 ETag 로 사용한다. 리스트를 읽기 전에 가져와야 읽는 도중 바뀐 경우 다음 요청에서 다시 받는다.
+        // 클라이언트가 가진 것과 같다면 리포지터리를 읽지도, 직렬화하지도 않고 304 를 리턴한다. 스레드 풀도 거치지 않는다.
+        final String eTag = "\"" + service.version(userId) + "\"";
+        if(isNotModified(ifNoneMatch, eTag)){
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(CacheControl.noCache())
+                    .build());
+        }
+
+        // limit 이나 after 가 넘어오면 전체 리스트 대신 한 페이지만 내려준다.
+        if(limit != null || after != null){
+            return async(() -> retrieveTodoPage(userId, limit, after, eTag));
+        }
+        return async(() -> handleRetrieve(userId, eTag));
+    }
+
+    // stream=true 면 리스트를 메모리에 만들지 않고 데이터베이스에서 한 행씩 읽으면서 바로 응답에 쓴다.
+    // 응답 형식은 GET /todo 와 같다. 리스트가 아무리 커도 힙 사용량이 일정하다. 캐시는 거치지 않는다.
+    // 쓰는 작업은 TodoExecutor 가 아니라 스프링 MVC 의 비동기 스레드에서 실행된다. 동시에 쓰는 수가 가득 차면 503 을 리턴한다.
+    // Accept 가 application/cbor 면 같은 구조를 CBOR 로 쓴다.
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamTodoList(@AuthenticationPrincipal String userId,
+                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                                @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        final String eTag = "\"" + service.version(userId) + "\"";
+        if(isNotModified(ifNoneMatch, eTag)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+
+        final boolean cbor = acceptsCbor(accept);
+        final JsonFactory factory = cbor ? cborConverter.getObjectMapper().getFactory() : objectMapper.getFactory();
+        StreamingResponseBody body = limited(outputStream -> writeTodoList(userId, outputStream, factory));
+        if(body == null){
+            return busy();
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(cbor ? MediaType.APPLICATION_CBOR : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    // {"error":null,"data":[...]} 를 Todo 하나씩 쓴다. 이미 응답을 쓰기 시작했으므로 도중에 실패하면 연결이 끊긴다.
+    private void writeTodoList(String userId, OutputStream outputStream, JsonFactory factory) throws IOException {
+        try (JsonGenerator generator = factory.createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeNullField("error");
+            generator.writeArrayFieldStart("data");
+            service.forEach(userId, entity -> {
+                try {
+                    generator.writeObject(new TodoDTO(entity));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // 유저의 Todo 를 한 줄에 하나씩 JSON 으로 내려준다(NDJSON). 받은 파일은 POST /todo/import 로 그대로 다시 넣을 수 있다.
+    // stream=true 와 같이 데이터베이스 커서에서 한 행씩 읽어서 바로 쓰므로 개수와 관계없이 힙 사용량이 일정하다.
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTodo(@AuthenticationPrincipal String userId){
+        StreamingResponseBody body = limited(outputStream -> writeTodoLines(userId, outputStream));
+        if(body == null){
+            return busy();
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("todos.ndjson").build().toString())
+                .cacheControl(CacheControl.noStore())
+                .contentType(NDJSON)
+                .body(body);
+    }
+
+    private void writeTodoLines(String userId, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = lineGenerator(outputStream)) {
+            service.forEach(userId, entity -> {
+                try {
+                    generator.writeObject(new TodoDTO(entity));
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // NDJSON 으로 받은 Todo 를 모두 새로 만든다. 한 줄씩 읽으면서 1000 개마다 한 트랜잭션으로 저장하므로
+    // 파일 크기와 관계없이 힙 사용량이 일정하다. POST /todo 를 반복하면 매번 리스트 전체를 다시 읽는 것과 달리 리스트를 읽지 않는다.
+    // 응답도 NDJSON 이다. 덩어리가 커밋될 때마다 진행 상황을 한 줄씩 쓰고 바로 내보낸다 (TodoImportProgressDTO).
+    // 잘못된 줄을 만나면 거기서 멈추고 마지막 줄에 error 를 싣는다. 그 전에 커밋된 Todo 는 남는다.
+    @PostMapping(value = "/import", consumes = {NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> importTodo(@AuthenticationPrincipal String userId, InputStream inputStream){
+        StreamingResponseBody body = limited(outputStream -> writeImportProgress(userId, inputStream, outputStream));
+        if(body == null){
+            return busy();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .contentType(NDJSON)
+                .body(body);
+    }
+
+    private void writeImportProgress(String userId, InputStream inputStream, OutputStream outputStream) throws IOException {
+        final int[] imported = {0};
+        try (JsonGenerator generator = lineGenerator(outputStream)) {
+            String error = null;
+            // 첫 줄부터 읽지 못하는 경우에도 마지막 줄로 알려야 하므로 본문을 읽는 것은 모두 이 안에서 한다.
+            try (MappingIterator<TodoDTO> items = objectMapper.readerFor(TodoDTO.class).readValues(inputStream)) {
+                service.importItems(userId, items, count -> {
+                    imported[0] = count;
+                    writeLine(generator, TodoImportProgressDTO.builder().imported(count).build());
+                });
+            } catch (UncheckedIOException e) {
+                // 클라이언트와의 연결이 끊겼다. 더 읽지 않는다.
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                error = e.getMessage();
+            }
+            writeLine(generator, TodoImportProgressDTO.builder().imported(imported[0]).done(true).error(error).build());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // 스트리밍 응답은 TodoExecutor 의 풀이 아니라 스프링 MVC 의 비동기 스레드에서 쓰이므로 동시에 쓰는 응답 수를 따로 제한한다.
+    // 가득 찼으면 null 을 리턴한다. 호출하는 쪽은 busy() 를 리턴한다.
+    private StreamingResponseBody limited(StreamingResponseBody body){
+        if(!executor.tryAcquireStream()){
+            return null;
+        }
+        return outputStream -> {
+            try {
+                body.writeTo(outputStream);
+            } finally {
+                executor.releaseStream();
+            }
+        };
+    }
+
+    private <T> ResponseEntity<T> busy(){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+
+    // 값 하나를 한 줄로 쓰고 바로 내보낸다.
+    private void writeLine(JsonGenerator generator, Object value){
+        try {
+            generator.writeObject(value);
+            generator.writeRaw('\n');
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 값 사이에 공백 대신 줄바꿈을 직접 쓰는 JsonGenerator. 닫아도 응답 스트림은 닫지 않는다.
+    private JsonGenerator lineGenerator(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    // Accept 에서 JSON 보다 CBOR 를 먼저 원하면 true. Accept 가 없거나 */* 면 JSON 이다.
+    private boolean acceptsCbor(String accept){
+        if(accept == null){
+            return false;
+        }
+        try {
+            List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+            MediaType.sortBySpecificityAndQuality(mediaTypes);
+            for(MediaType mediaType : mediaTypes){
+                if(mediaType.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR)){
+                    return true;
+                }
+                if(mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)){
+                    return false;
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        return false;
+    }
+
+    private ResponseEntity<?> handleRetrieve(String userId, String eTag) {
+
         // String temporaryUserId = "temporary-user"; // temporary user id.
 
         // (1) 서비스 메서드의 retrieve 메서드를 사용해 Todo 리스트를 가져온다.
@@ -82,11 +355,100 @@ public class TodoController {
         ResponseDTO<TodoDTO> response = ResponseDTO.<TodoDTO>builder().data(dtos).build();
 
         // (7) ResponseDTO를 리턴한다.
-        return ResponseEntity.ok().body(response);
+        return ResponseEntity.ok().eTag(eTag).cacheControl(CacheControl.noCache()).body(response);
+    }
+
+    private ResponseEntity<?> retrieveTodoPage(String userId, Integer limit, String after, String eTag) {
+        try {
+            // (1) limit 을 검증한다. 넘어오지 않았다면 기본 크기를 사용한다.
+            final int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+            if(pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+                throw new RuntimeException("limit must be between 1 and " + MAX_PAGE_SIZE);
+            }
+
+            // (2) 커서를 해석해 마지막으로 받은 Todo 의 id 를 꺼낸다.
+            final String afterId = after == null ? null : TodoCursor.decode(after);
+
+            // (3) 서비스에서 pageSize + 1 개까지 가져온다. 하나가 더 있다면 다음 페이지가 있다는 뜻이다.
+            List<TodoEntity> entities = service.retrievePage(userId, afterId, pageSize);
+            String next = null;
+            if(entities.size() > pageSize){
+                entities = entities.subList(0, pageSize);
+                next = TodoCursor.encode(entities.get(pageSize - 1).getId().toString());
+            }
+
+            // (4) TodoDTO 리스트로 변환하고 다음 커서와 함께 리턴한다.
+            List<TodoDTO> dtos = entities.stream().map(TodoDTO::new).collect(Collectors.toList());
+            ResponseDTO<TodoDTO> response = ResponseDTO.<TodoDTO>builder().data(dtos).next(next).build();
+            return ResponseEntity.ok().eTag(eTag).cacheControl(CacheControl.noCache()).body(response);
+        } catch (Exception e){
+            String error = e.getMessage();
+            ResponseDTO<TodoDTO> response = ResponseDTO.<TodoDTO>builder().error(error).build();
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // 유저의 Todo 가 생성/수정/삭제될 때마다 SSE 로 알려준다. 폴링 대신 이 연결 하나를 열어두면 된다.
+    // 브라우저의 EventSource 는 헤더를 붙일 수 없으므로 이 경로에 한해 POST /todo/events/ticket 으로 받은 티켓을
+    // ticket 쿼리 파라미터로 받는다 (JwtAuthenticationFilter). 티켓은 30초 안에 한 번만 쓸 수 있다.
+    // 노드의 연결 수가 가득 찼으면 503 을 리턴한다.
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeTodoEvents(@AuthenticationPrincipal String userId){
+        try {
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(events.subscribe(userId));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .build();
+        }
+    }
+
+    // GET /todo/events?ticket=... 을 열 때 쓸 티켓을 발급한다. 이 요청은 다른 요청처럼 Authorization 헤더로 인증한다.
+    @PostMapping("/events/ticket")
+    public ResponseEntity<?> issueEventsTicket(@AuthenticationPrincipal String userId){
+        ResponseDTO<String> response = ResponseDTO.<String>builder()
+                .data(Collections.singletonList(tokenProvider.createEventsTicket(userId)))
+                .build();
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(response);
+    }
+
+    @GetMapping("/search")
+    public CompletableFuture<ResponseEntity<?>> searchTodo(@AuthenticationPrincipal String userId,
+                                                           @RequestParam(required = false) String q,
+                                                           @RequestParam(required = false) Integer limit){
+        return async(() -> handleSearch(userId, q, limit));
+    }
+
+    private ResponseEntity<?> handleSearch(String userId, String q, Integer limit){
+        try {
+            // (1) limit 을 검증한다. 넘어오지 않았다면 기본 크기를 사용한다.
+            final int size = limit == null ? DEFAULT_PAGE_SIZE : limit;
+            if(size < 1 || size > MAX_PAGE_SIZE){
+                throw new RuntimeException("limit must be between 1 and " + MAX_PAGE_SIZE);
+            }
+
+            // (2) 제목이 검색어와 일치하는 Todo 를 id 순으로 가져온다.
+            List<TodoEntity> entities = service.search(userId, q, size);
+
+            // (3) TodoDTO 리스트로 변환해 리턴한다.
+            List<TodoDTO> dtos = entities.stream().map(TodoDTO::new).collect(Collectors.toList());
+            ResponseDTO<TodoDTO> response = ResponseDTO.<TodoDTO>builder().data(dtos).build();
+            return ResponseEntity.ok().body(response);
+        } catch (Exception e){
+            String error = e.getMessage();
+            ResponseDTO<TodoDTO> response = ResponseDTO.<TodoDTO>builder().error(error).build();
+            return ResponseEntity.badRequest().body(response);
+        }
     }
 
     @PutMapping
-    public ResponseEntity<?> updateTodo(@AuthenticationPrincipal String userId, @RequestBody TodoDTO dto){
+    public CompletableFuture<ResponseEntity<?>> updateTodo(@AuthenticationPrincipal String userId, @RequestBody TodoDTO dto,
+                                                           @RequestHeader(value = RESPONSE_MODE_HEADER, required = false) String modeHeader,
+                                                           @RequestParam(required = false) String mode){
+        return async(() -> handleUpdate(userId, dto, modeHeader, mode));
+    }
+
+    private ResponseEntity<?> handleUpdate(String userId, TodoDTO dto, String modeHeader, String mode){
         // String temporaryUserId = "temporary-user"; // temporary user id.
 
         // (1) dto를 Entity로 변환한다.
@@ -95,7 +457,12 @@ public class TodoController {
         // (2) id를 temporaryUserId로 초기화한다. 여기는 4장 인증과 인가에서 수정할 예정이다.
         // entity.setUserId(temporaryUserId);
         // -> (2) Authentication Bearer Token 을 통해 받은 userId를 넘긴다.
-        entity.setUserId(userId);
+        entity.setUserId(TimeOrderedIds.parse(userId));
+
+        // delta 모드라면 수정된 Todo 만 리턴한다. 존재하지 않는 Todo 였다면 data 가 비어있다.
+        if(isDelta(modeHeader, mode)){
+            return deltaResponse(userId, service.updateItem(entity));
+        }
 
         // (3) 서비스를 이용해 entity를 업데이트한다.
         List<TodoEntity> entities = service.update(entity);
@@ -111,7 +478,13 @@ public class TodoController {
     }
 
     @DeleteMapping
-    public ResponseEntity<?> deleteTodo(@AuthenticationPrincipal String userId, @RequestBody TodoDTO dto){
+    public CompletableFuture<ResponseEntity<?>> deleteTodo(@AuthenticationPrincipal String userId, @RequestBody TodoDTO dto,
+                                                           @RequestHeader(value = RESPONSE_MODE_HEADER, required = false) String modeHeader,
+                                                           @RequestParam(required = false) String mode){
+        return async(() -> handleDelete(userId, dto, modeHeader, mode));
+    }
+
+    private ResponseEntity<?> handleDelete(String userId, TodoDTO dto, String modeHeader, String mode){
         try{
             // String temporaryUserId = "temporary-user"; // temporaray user id.
 
@@ -121,7 +494,12 @@ public class TodoController {
             // (2) 임시 유저 아이디를 설정해준다. 현재는 인증과 인가 기능이 없으므로 한 유저(temporary-user)만 로그인 없이 사용 가능한 애플리케이션인 셈이다.
             // entity.setUserId(temporaryUserId);
             // -> (2) Authentication Bearer Token 을 통해 받은 userId를 넘긴다.
-            entity.setUserId(userId);
+            entity.setUserId(TimeOrderedIds.parse(userId));
+
+            // delta 모드라면 삭제된 Todo 만 리턴한다.
+            if(isDelta(modeHeader, mode)){
+                return deltaResponse(userId, service.deleteItem(entity));
+            }
 
             // (3) 서비스를 이용해 entity를 삭제한다.
             List<TodoEntity> entities = service.delete(entity);
@@ -142,4 +520,76 @@ public class TodoController {
         }
     }
 
+    // 오프라인에서 쌓인 생성/수정/삭제를 한 번의 요청, 한 번의 트랜잭션으로 반영한다.
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<?>> batchTodo(@AuthenticationPrincipal String userId, @RequestBody List<TodoBatchItemDTO> items){
+        return async(() -> handleBatch(userId, items));
+    }
+
+    private ResponseEntity<?> handleBatch(String userId, List<TodoBatchItemDTO> items){
+        try {
+            // (1) 서비스를 이용해 변경을 반영하고 항목별 결과를 받는다.
+            List<TodoBatchResultDTO> results = service.batch(userId, items);
+
+            // (2) 결과와 변경 후의 리스트 버전을 리턴한다.
+            ResponseDTO<TodoBatchResultDTO> response = ResponseDTO.<TodoBatchResultDTO>builder()
+                    .data(results)
+                    .version(service.version(userId))
+                    .build();
+            return ResponseEntity.ok().body(response);
+        } catch (Exception e){
+            String error = e.getMessage();
+            ResponseDTO<TodoBatchResultDTO> response = ResponseDTO.<TodoBatchResultDTO>builder().error(error).build();
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // handler 를 TodoExecutor 에서 실행한다. 스레드 풀과 대기열이 가득 차 거절되면 기다리지 않고 바로 503 을 리턴한다.
+    private CompletableFuture<ResponseEntity<?>> async(Supplier<ResponseEntity<?>> handler){
+        return executor.submit(handler).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if(cause instanceof RejectedExecutionException){
+                ResponseDTO<TodoDTO> response = ResponseDTO.<TodoDTO>builder().error("Server is busy. Try again later.").build();
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(response);
+            }
+            // 그 밖의 예외는 지금처럼 스프링의 예외 처리에 맡긴다.
+            throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+        });
+    }
+
+    // If-None-Match 는 쉼표로 구분된 ETag 목록이나 * 이다. 약한 비교(W/ 무시)로 하나라도 같으면 변경되지 않은 것이다.
+    private boolean isNotModified(String ifNoneMatch, String eTag){
+        if(ifNoneMatch == null){
+            return false;
+        }
+        for(String candidate : ifNoneMatch.split(",")){
+            String tag = candidate.trim();
+            if(tag.startsWith("W/")){
+                tag = tag.substring(2);
+            }
+            if(tag.equals("*") || tag.equals(eTag)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isDelta(String modeHeader, String mode){
+        return DELTA_MODE.equalsIgnoreCase(modeHeader) || DELTA_MODE.equalsIgnoreCase(mode);
+    }
+
+    // 바뀐 Todo 와 변경 후의 리스트 버전만 담아 리턴한다. 프론트엔드는 이것으로 자신의 상태를 직접 고친다.
+    private ResponseEntity<?> deltaResponse(String userId, Optional<TodoEntity> changed){
+        List<TodoDTO> dtos = changed.map(TodoDTO::new)
+                .map(Collections::singletonList)
+                .orElse(Collections.emptyList());
+        ResponseDTO<TodoDTO> response = ResponseDTO.<TodoDTO>builder()
+                .data(dtos)
+                .version(service.version(userId))
+                .build();
+        return ResponseEntity.ok().body(response);
+    }
+
 }
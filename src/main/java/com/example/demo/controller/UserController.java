@@ -3,18 +3,23 @@ package com.example.demo.controller;
 import com.example.demo.dto.ResponseDTO;
 import com.example.demo.dto.UserDTO;
 import com.example.demo.model.UserEntity;
+import com.example.demo.security.PasswordHasher;
 import com.example.demo.security.TokenProvider;
 import com.example.demo.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
 @Slf4j
 @RestController
 @RequestMapping("/auth")
@@ -24,60 +29,88 @@ public class UserController {
     @Autowired
     private TokenProvider tokenProvider;
 
-    // Bean 으로 작성해도 됨.
-    private PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    // BCrypt 는 요청 스레드가 아닌 PasswordHasher 의 전용 스레드 풀에서 실행한다.
+    @Autowired
+    private PasswordHasher passwordHasher;
 
     @PostMapping("/signup")
-    public ResponseEntity<?> registerUser(@RequestBody UserDTO userDTO){
-        try{
-            if(userDTO == null || userDTO.getPassword() == null){
-                throw new RuntimeException("Invalid Password value.");
-            }
+    public CompletableFuture<ResponseEntity<?>> registerUser(@RequestBody UserDTO userDTO){
+        if(userDTO == null || userDTO.getPassword() == null){
+            ResponseDTO responseDTO = ResponseDTO.builder().error("Invalid Password value.").build();
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(responseDTO));
+        }
 
-            // 요청을 이용해 저장할 유저 만들기
-            UserEntity user = UserEntity.builder()
-                    .username(userDTO.getUsername())
-                    .password(passwordEncoder.encode(userDTO.getPassword()))
-                    .build();
-            // 서비스로 이용해 리포지터리에 유저 저장
-            UserEntity registeredUser = userService.create(user);
-            UserDTO responseUserDTO  = UserDTO.builder()
-                    .id(registeredUser.getId())
-                    .username(registeredUser.getUsername())
-                    .build();
+        return passwordHasher.encode(userDTO.getPassword())
+                .<ResponseEntity<?>>thenApply(encodedPassword -> {
+                    // 요청을 이용해 저장할 유저 만들기
+                    UserEntity user = UserEntity.builder()
+                            .username(userDTO.getUsername())
+                            .password(encodedPassword)
+                            .build();
+                    // 서비스로 이용해 리포지터리에 유저 저장
+                    UserEntity registeredUser = userService.create(user);
+                    UserDTO responseUserDTO  = UserDTO.builder()
+                            .id(registeredUser.getId().toString())
+                            .username(registeredUser.getUsername())
+                            .build();
 
-            return ResponseEntity.ok().body(responseUserDTO);
-        } catch (Exception e) {
-            // 유저 정보는 항상 하나이므로 리스트로 만들어야 하는 ResponseDTO를 사용하지 않고 그냥 UserDTO 리턴.
-            ResponseDTO responseDTO = ResponseDTO.builder().error(e.getMessage()).build();
-            return ResponseEntity
-                    .badRequest()
-                    .body(responseDTO);
-        }
+                    return ResponseEntity.ok().body(responseUserDTO);
+                })
+                .exceptionally(e -> {
+                    Throwable cause = unwrap(e);
+                    if(cause instanceof RejectedExecutionException){
+                        return tooManyRequests();
+                    }
+                    // 유저 정보는 항상 하나이므로 리스트로 만들어야 하는 ResponseDTO를 사용하지 않고 그냥 UserDTO 리턴.
+                    ResponseDTO responseDTO = ResponseDTO.builder().error(cause.getMessage()).build();
+                    return ResponseEntity
+                            .badRequest()
+                            .body(responseDTO);
+                });
     }
 
     @PostMapping("/signin")
-    public ResponseEntity<?> authenticate(@RequestBody UserDTO userDTO){
-        UserEntity user = userService.getByCredentials(
-                userDTO.getUsername(),
-                userDTO.getPassword(),
-                passwordEncoder);
+    public CompletableFuture<ResponseEntity<?>> authenticate(@RequestBody UserDTO userDTO){
+        return userService.getByCredentials(
+                        userDTO.getUsername(),
+                        userDTO.getPassword())
+                .<ResponseEntity<?>>thenApply(user -> {
+                    if(user != null){
+                        final String token = tokenProvider.create(user);
+                        final UserDTO responseUserDTO = UserDTO.builder()
+                                .username(user.getUsername())
+                                .id(user.getId().toString())
+                                .token(token)
+                                .build();
+                        return ResponseEntity.ok().body(responseUserDTO);
+                    } else {
+                        ResponseDTO responseDTO = ResponseDTO.builder()
+                                .error("Login failed.")
+                                .build();
+                        return ResponseEntity
+                                .badRequest()
+                                .body(responseDTO);
+                    }
+                })
+                .exceptionally(e -> {
+                    if(unwrap(e) instanceof RejectedExecutionException){
+                        return tooManyRequests();
+                    }
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                });
+    }
 
-        if(user != null){
-            final String token = tokenProvider.create(user);
-            final UserDTO responseUserDTO = UserDTO.builder()
-                    .username(user.getUsername())
-                    .id(user.getId())
-                    .token(token)
-                    .build();
-                return ResponseEntity.ok().body(responseUserDTO);
-        } else {
-            ResponseDTO responseDTO = ResponseDTO.builder()
-                    .error("Login failed.")
-                    .build();
-                return ResponseEntity
-                        .badRequest()
-                        .body(responseDTO);
-        }
+    private static Throwable unwrap(Throwable e){
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    // 해시 풀이 가득 찬 경우. 기다리게 하지 않고 바로 429 를 돌려준다.
+    private static ResponseEntity<?> tooManyRequests(){
+        ResponseDTO responseDTO = ResponseDTO.builder()
+                .error("Too many requests. Try again later.")
+                .build();
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(responseDTO);
     }
 }
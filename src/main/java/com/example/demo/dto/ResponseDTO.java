@@ -1,5 +1,6 @@
 package com.example.demo.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -14,4 +15,10 @@ import java.util.List;
 public class ResponseDTO<T> {
     private String error;
     private List<T> data;
+    // 다음 페이지를 요청할 때 after 로 넘길 커서. 페이지네이션 요청이 아니거나 마지막 페이지면 내려가지 않는다.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String next;
+    // 변경 요청을 delta 모드로 보낸 경우, 변경이 반영된 뒤의 Todo 리스트 버전
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
 }
@@ -0,0 +1,17 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// POST /todo/batch 로 넘어오는 변경 하나.
+// op 는 create, update, delete 중 하나이다.
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class TodoBatchItemDTO {
+    private String op;
+    private TodoDTO todo;
+}
@@ -0,0 +1,22 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// POST /todo/batch 의 항목별 결과. 요청과 같은 순서로 내려간다.
+// 성공하면 status 는 ok 이고 todo 에 반영된 결과가, 실패하면 status 는 error 이고 error 에 메시지가 담긴다.
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class TodoBatchResultDTO {
+    public static final String OK = "ok";
+    public static final String ERROR = "error";
+
+    private String op;
+    private String status;
+    private String error;
+    private TodoDTO todo;
+}
@@ -0,0 +1,32 @@
+package com.example.demo.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// GET /todo 페이지네이션에 사용하는 커서.
+// 클라이언트는 커서의 내용을 해석하지 않고 다음 요청의 after 파라미터로 그대로 돌려주기만 한다.
+public final class TodoCursor {
+    private static final String PREFIX = "todo:";
+
+    private TodoCursor() {
+    }
+
+    // 마지막으로 내려준 Todo 의 id 를 커서 문자열로 만든다.
+    public static String encode(final String lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 커서 문자열에서 마지막 Todo 의 id 를 꺼낸다. 형식이 맞지 않으면 예외를 던진다.
+    public static String decode(final String cursor) {
+        try {
+            final String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith(PREFIX) && decoded.length() > PREFIX.length()) {
+                return decoded.substring(PREFIX.length());
+            }
+        } catch (IllegalArgumentException e) {
+            // 아래에서 처리
+        }
+        throw new RuntimeException("Invalid cursor.");
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.dto;
 
+import com.example.demo.model.TimeOrderedIds;
 import com.example.demo.model.TodoEntity;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -16,14 +17,14 @@ public class TodoDTO {
     private boolean done;
 
     public TodoDTO(final TodoEntity entity){
-        this.id = entity.getId();
+        this.id = entity.getId() == null ? null : entity.getId().toString();
         this.title = entity.getTitle();
         this.done = entity.isDone();
     }
 
     public static TodoEntity toEntity(final TodoDTO dto){
         return TodoEntity.builder()
-                .id(dto.getId())
+                .id(dto.getId() == null ? null : TimeOrderedIds.parse(dto.getId()))
                 .title(dto.getTitle())
                 .done(dto.isDone())
                 .build();
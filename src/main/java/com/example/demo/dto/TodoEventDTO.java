@@ -0,0 +1,24 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// GET /todo/events 로 내려가는 변경 알림. SSE 의 event 이름도 type 과 같다.
+// version 은 변경이 반영된 뒤의 Todo 리스트 버전이므로 GET /todo 의 ETag 와 비교할 수 있다.
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class TodoEventDTO {
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+    // 가져오기(POST /todo/import)로 여러 Todo 가 한꺼번에 생성됐다. todo 는 비어있으므로 리스트를 다시 읽는다.
+    public static final String IMPORTED = "imported";
+
+    private String type;
+    private TodoDTO todo;
+    private Long version;
+}
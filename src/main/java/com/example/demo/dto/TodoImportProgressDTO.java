@@ -0,0 +1,20 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// POST /todo/import 응답의 한 줄. 덩어리가 커밋될 때마다 하나씩, 끝나면 done 이 true 인 줄을 하나 더 쓴다.
+// imported 는 지금까지 커밋된 Todo 수다. 도중에 실패하면 마지막 줄에 error 가 실린다.
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class TodoImportProgressDTO {
+    private int imported;
+    private boolean done;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+}
@@ -0,0 +1,85 @@
+package com.example.demo.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// 요청마다 찍히는 로그를 샘플링하고 초당 개수를 제한한다. logback-spring.xml 에서 로거별로 하나씩 등록한다.
+//   loggerName        이 이름(패키지 포함)으로 시작하는 로거에만 적용한다.
+//   level             이 레벨 이하의 로그에만 적용한다. 기본 INFO 이므로 WARN, ERROR 는 항상 남는다.
+//   sampleEvery       N 개 중 하나만 남긴다. 1 이면 샘플링하지 않는다.
+//   permitsPerSecond  샘플링을 통과한 로그 중 1초에 최대 몇 개까지 남길지. 0 이하면 제한하지 않는다.
+// 로그를 찍는 스레드에서 실행되므로 락 없이 원자 연산만 사용한다.
+public class SamplingTurboFilter extends TurboFilter {
+    private String loggerName;
+    private Level level = Level.INFO;
+    private int sampleEvery = 1;
+    private int permitsPerSecond = 0;
+
+    private final AtomicLong sampled = new AtomicLong();
+    private final AtomicLong windowStart = new AtomicLong();
+    private final AtomicInteger windowCount = new AtomicInteger();
+    // 테스트에서 시간을 고정할 수 있도록 분리한다.
+    LongSupplier clock = System::currentTimeMillis;
+
+    @Override
+    public void start() {
+        if (loggerName == null) {
+            addError("loggerName is required for " + getName());
+            return;
+        }
+        super.start();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // format 이 null 이면 isDebugEnabled() 같은 레벨 확인이므로 관여하지 않는다.
+        if (!isStarted() || format == null || !this.level.isGreaterOrEqual(level)
+                || !logger.getName().startsWith(loggerName)) {
+            return FilterReply.NEUTRAL;
+        }
+        // 터보 필터는 로거의 레벨 확인보다 먼저 실행된다. 어차피 버려질 로그가 샘플과 초당 한도를 쓰지 않도록 한다.
+        if (!level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        if (sampleEvery > 1 && sampled.getAndIncrement() % sampleEvery != 0) {
+            return FilterReply.DENY;
+        }
+        if (permitsPerSecond > 0 && !tryAcquire()) {
+            return FilterReply.DENY;
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    // 1초 고정 윈도우. 윈도우가 바뀌는 순간 몇 개 더 통과할 수 있지만 로그 제한에는 충분하다.
+    private boolean tryAcquire() {
+        final long second = clock.getAsLong() / 1000;
+        final long start = windowStart.get();
+        if (start != second && windowStart.compareAndSet(start, second)) {
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() <= permitsPerSecond;
+    }
+
+    public void setLoggerName(String loggerName) {
+        this.loggerName = loggerName;
+    }
+
+    public void setLevel(String level) {
+        this.level = Level.toLevel(level, Level.INFO);
+    }
+
+    public void setSampleEvery(int sampleEvery) {
+        this.sampleEvery = sampleEvery;
+    }
+
+    public void setPermitsPerSecond(int permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 응답 바디를 쓰기 직전에 요청이 실행한 SQL 문 수를 메트릭(http.server.requests.sql.statements)으로 남긴다.
+// sql.statement-count.header 가 true 면 X-SQL-Statement-Count 헤더로도 내려준다. 디버깅과 테스트용이므로 운영에서는 끈다.
+@ControllerAdvice
+public class SqlStatementCountAdvice implements ResponseBodyAdvice<Object> {
+    public static final String HEADER = "X-SQL-Statement-Count";
+
+    @Value("${sql.statement-count.header:false}")
+    private boolean headerEnabled;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    // "method uri" -> 등록해둔 summary. uri 는 매핑 패턴이므로 키의 수는 엔드포인트 수로 제한된다.
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest)) {
+            return body;
+        }
+        final HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+        final AtomicInteger counter = (AtomicInteger) servletRequest.getAttribute(SqlStatementCountFilter.COUNTER_ATTRIBUTE);
+        if (counter == null) {
+            return body;
+        }
+
+        final int statements = counter.get();
+        if (headerEnabled) {
+            response.getHeaders().set(HEADER, String.valueOf(statements));
+        }
+        // http.server.requests 와 같은 uri 태그(매핑 패턴)를 사용한다.
+        final Object pattern = servletRequest.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        summary(servletRequest.getMethod(), pattern == null ? "UNKNOWN" : pattern.toString()).record(statements);
+        return body;
+    }
+
+    // 요청마다 빌더로 레지스트리를 찾지 않도록 method, uri 별로 한 번만 등록한다.
+    private DistributionSummary summary(final String method, final String uri) {
+        return summaries.computeIfAbsent(method + " " + uri, key -> DistributionSummary.builder("http.server.requests.sql.statements")
+                .tag("method", method)
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.metrics;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 요청마다 SQL 문 카운터를 만들어 요청 스레드에 바인딩하고, 비동기로 끝나는 요청에서도 읽을 수 있도록 요청 속성에 넣어둔다.
+// 다른 필터(인증 등)가 실행하는 SQL 까지 세도록 가장 먼저 실행한다.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SqlStatementCountFilter extends OncePerRequestFilter {
+    public static final String COUNTER_ATTRIBUTE = SqlStatementCountFilter.class.getName() + ".counter";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        final AtomicInteger counter = new AtomicInteger();
+        request.setAttribute(COUNTER_ATTRIBUTE, counter);
+        SqlStatementCounter.bind(counter);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlStatementCounter.clear();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.demo.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 요청 하나가 실행한 SQL 문 수를 센다.
+// hibernate.session_factory.statement_inspector 로 등록되어 Hibernate 가 직접 만들기 때문에 스프링 빈이 아니다.
+// 그래서 카운터는 스레드에 바인딩한다. SqlStatementCountFilter 가 요청 스레드에, TodoExecutor 가 작업 스레드에 바인딩한다.
+// 바인딩된 카운터가 없는 스레드(Flyway, 스케줄러 등)의 SQL 은 세지 않는다.
+public class SqlStatementCounter implements StatementInspector {
+    private static final ThreadLocal<AtomicInteger> CURRENT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        final AtomicInteger counter = CURRENT.get();
+        if (counter != null) {
+            counter.incrementAndGet();
+        }
+        return sql;
+    }
+
+    // 현재 스레드에 바인딩된 카운터. 없으면 null 이다.
+    public static AtomicInteger current() {
+        return CURRENT.get();
+    }
+
+    public static void bind(final AtomicInteger counter) {
+        if (counter == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(counter);
+        }
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.demo.model;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.io.Serializable;
+
+// 엔티티 id 를 TimeOrderedIds 로 생성하는 Hibernate 생성기
+public class TimeOrderedIdGenerator implements IdentifierGenerator {
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        return TimeOrderedIds.next();
+    }
+}
@@ -5,11 +5,14 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Type;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import java.util.UUID;
 
 @Builder
 @NoArgsConstructor
@@ -19,10 +22,14 @@ import javax.persistence.Table;
 @Table(name ="Todo")
 public class TodoEntity {
     @Id
-    @GeneratedValue(generator = "system-uuid")
-    @GenericGenerator(name="system-uuid", strategy = "uuid")
-    private String id;  // 오브젝트 아이디
-    private String userId;  // 오브젝트를 생성한 유저의 아이디
+    @GeneratedValue(generator = "time-ordered-uuid")
+    @GenericGenerator(name = "time-ordered-uuid", strategy = "com.example.demo.model.TimeOrderedIdGenerator")
+    @Type(type = "uuid-binary")
+    @Column(columnDefinition = "BINARY(16)")
+    private UUID id;  // 오브젝트 아이디. 시간 순서로 정렬되는 UUID
+    @Type(type = "uuid-binary")
+    @Column(columnDefinition = "BINARY(16)")
+    private UUID userId;  // 오브젝트를 생성한 유저의 아이디
     private String title;   // Todo 타이틀 예) 운동하기
     private boolean done;   // true - todo를 완료한 경우(check)
 
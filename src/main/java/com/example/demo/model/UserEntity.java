@@ -5,8 +5,10 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.*;
+import java.util.UUID;
 
 @Data
 @Entity
@@ -16,9 +18,11 @@ import javax.persistence.*;
 @Table(uniqueConstraints = {@UniqueConstraint(columnNames = "username")})
 public class UserEntity {
     @Id
-    @GeneratedValue(generator = "system-uuid")
-    @GenericGenerator(name = "system-uuid", strategy = "uuid")
-    private String id;  // 유저에게 고유하게 부여되는 id
+    @GeneratedValue(generator = "time-ordered-uuid")
+    @GenericGenerator(name = "time-ordered-uuid", strategy = "com.example.demo.model.TimeOrderedIdGenerator")
+    @Type(type = "uuid-binary")
+    @Column(columnDefinition = "BINARY(16)")
+    private UUID id;  // 유저에게 고유하게 부여되는 id. 시간 순서로 정렬되는 UUID
 
     @Column
     private String username;    // 아이디로 사용할 유저네임. 이메일일 수도 그냥 문자열일 수도 있다.
@@ -0,0 +1,63 @@
+package com.example.demo.persistence;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// 레플리카는 프라이머리보다 늦으므로, 방금 Todo 를 바꾼 유저가 자기 변경을 못 보는 일이 없도록
+// 변경 후 read-your-writes-seconds 동안은 그 유저의 읽기를 프라이머리로 보낸다 (ReplicaRoutingDataSource).
+// 기록은 노드 메모리에만 있으므로 다른 노드로 간 요청에는 적용되지 않는다. 레플리카 라우팅이 꺼져 있으면 아무것도 하지 않는다.
+@Component
+public class ReadYourWrites {
+    private static final long MAXIMUM_USERS = 100_000;
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = new ThreadLocal<>();
+
+    // 최근에 쓴 유저 -> 표시. 라우팅이 꺼져 있으면 null 이다.
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWrites(@Value("${replica.enabled:false}") boolean enabled,
+                          @Value("${replica.read-your-writes-seconds:5}") long seconds) {
+        this.recentWriters = !enabled ? null : CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_USERS)
+                .expireAfterWrite(seconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    // 유저의 변경이 커밋됐음을 기록한다.
+    public void written(final String userId) {
+        if (recentWriters != null) {
+            recentWriters.put(userId, Boolean.TRUE);
+        }
+    }
+
+    // 유저가 최근에 썼다면 query 를 프라이머리에서 실행한다.
+    public <T> T read(final String userId, final Supplier<T> query) {
+        if (recentWriters != null && recentWriters.getIfPresent(userId) != null) {
+            return onPrimary(query);
+        }
+        return query.get();
+    }
+
+    // 변경하기 전에 읽는 것처럼 항상 최신 값이 필요한 query 를 프라이머리에서 실행한다.
+    public <T> T onPrimary(final Supplier<T> query) {
+        final Boolean previous = PRIMARY_FORCED.get();
+        PRIMARY_FORCED.set(Boolean.TRUE);
+        try {
+            return query.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_FORCED.remove();
+            } else {
+                PRIMARY_FORCED.set(previous);
+            }
+        }
+    }
+
+    public static boolean isPrimaryForced() {
+        return Boolean.TRUE.equals(PRIMARY_FORCED.get());
+    }
+}
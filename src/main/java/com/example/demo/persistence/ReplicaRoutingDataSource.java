@@ -0,0 +1,59 @@
+package com.example.demo.persistence;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 읽기 전용 트랜잭션은 레플리카로, 나머지는 프라이머리로 보낸다. 레플리카가 여럿이면 돌아가면서 사용한다.
+// 트랜잭션이 읽기 전용인지는 커넥션을 실제로 가져올 때 결정되므로 LazyConnectionDataSourceProxy 로 감싸서 사용해야 한다.
+// 방금 쓴 유저의 읽기는 ReadYourWrites 가 프라이머리로 고정한다.
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+    public static final String PRIMARY = "primary";
+    private static final String REPLICA_PREFIX = "replica-";
+
+    private final List<DataSource> dataSources = new ArrayList<>();
+    private final List<String> replicaKeys = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(final DataSource primary, final List<DataSource> replicas) {
+        final Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        dataSources.add(primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            final String key = REPLICA_PREFIX + i;
+            targets.put(key, replicas.get(i));
+            replicaKeys.add(key);
+            dataSources.add(replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicaKeys.isEmpty()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || ReadYourWrites.isPrimaryForced()) {
+            return PRIMARY;
+        }
+        return replicaKeys.get(Math.floorMod(next.getAndIncrement(), replicaKeys.size()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof Closeable) {
+                ((Closeable) dataSource).close();
+            }
+        }
+    }
+}
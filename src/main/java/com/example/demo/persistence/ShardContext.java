@@ -0,0 +1,31 @@
+package com.example.demo.persistence;
+
+import java.util.function.Supplier;
+
+// 현재 스레드의 쿼리가 갈 샤드 번호. ShardRoutingDataSource 가 커넥션을 가져올 때 읽는다.
+// 정해지지 않았으면 0 번 샤드(spring.datasource)로 간다. 유저 테이블처럼 샤딩하지 않는 것은 모두 여기에 있다.
+public final class ShardContext {
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    // work 를 shard 에서 실행한다. 끝나면 이전 값으로 되돌리므로 중첩해서 호출해도 된다.
+    public static <T> T on(final int shard, final Supplier<T> work) {
+        final Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.demo.persistence;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// ShardContext 의 샤드 번호로 데이터소스를 고른다. 0 번이 기본이다.
+// 트랜잭션 안에서는 처음 가져온 커넥션을 계속 쓰므로, 트랜잭션이 시작된 뒤에 샤드를 정할 수 있도록
+// LazyConnectionDataSourceProxy 로 감싸서 사용해야 한다.
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+    private final List<DataSource> shards;
+
+    public ShardRoutingDataSource(final List<DataSource> shards) {
+        this.shards = new ArrayList<>(shards);
+        final Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        // 없는 샤드 번호로 기본 샤드에 잘못 쓰지 않도록 한다.
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    // 설정된 샤드 수. 라우팅에 쓰는 샤드 수(shard.count)보다 많을 수 있다.
+    public int size() {
+        return shards.size();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        final Integer shard = ShardContext.current();
+        return shard == null ? 0 : shard;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource dataSource : shards) {
+            if (dataSource instanceof Closeable) {
+                ((Closeable) dataSource).close();
+            }
+        }
+    }
+}
@@ -1,19 +1,45 @@
 package com.example.demo.persistence;
 
 import com.example.demo.model.TodoEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
 
+// 읽기 메서드는 읽기 전용 트랜잭션으로 실행되므로 레플리카 라우팅이 켜져 있으면 레플리카에서 읽는다 (ReplicaRoutingDataSource).
 @Repository
-public interface TodoRepository extends JpaRepository<TodoEntity, String> {
+public interface TodoRepository extends JpaRepository<TodoEntity, UUID> {
 
     // List<TodoEntity> findByUserIdQuery(String userId);
 
     // ?1 은 메서드의 매개변수의 순서 위치다.
     //@Query("select * from TodoEntity t where t.userId = ?1")
-    List<TodoEntity> findByUserId(String userId);
+    @Transactional(readOnly = true)
+    List<TodoEntity> findByUserId(UUID userId);
+
+    // 커서(keyset) 페이지네이션용 쿼리. id 순으로 정렬해 pageable 의 크기만큼만 가져온다.
+    // 첫 페이지
+    @Transactional(readOnly = true)
+    List<TodoEntity> findByUserIdOrderByIdAsc(UUID userId, Pageable pageable);
+
+    // 다음 페이지 - 이전 페이지의 마지막 id 보다 큰 것부터 가져온다. OFFSET 을 쓰지 않으므로 리스트가 길어져도 비용이 일정하다.
+    @Transactional(readOnly = true)
+    List<TodoEntity> findByUserIdAndIdGreaterThanOrderByIdAsc(UUID userId, UUID id, Pageable pageable);
+
+    // 응답 스트리밍용. 결과를 한 번에 올리지 않고 fetch size 만큼씩 읽는다. 트랜잭션 안에서 호출하고 다 쓰면 닫아야 한다.
+    // MySQL 은 useCursorFetch=true 여야 fetch size 대로 나눠 읽는다.
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")
+    })
+    @Query("select t from TodoEntity t where t.userId = ?1 order by t.id")
+    Stream<TodoEntity> streamByUserId(UUID userId);
 
 }
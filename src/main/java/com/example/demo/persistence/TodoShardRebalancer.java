@@ -0,0 +1,190 @@
+package com.example.demo.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+// 샤드 수를 바꿀 때 유저의 Todo 를 새 샤드로 복사하고, 옮겨간 유저의 Todo 를 예전 샤드에서 지운다.
+// 애플리케이션을 한 번 실행하고 끝나는 명령으로 쓴다.
+//   (1) shard.datasources 에 새 데이터베이스를 추가한다. shard.count 는 그대로 둔다.
+//   (2) 복사: --spring.main.web-application-type=none --shard.rebalance.target-count=<새 샤드 수>
+//       시작한 시각(cutoff, epoch 밀리초)을 로그에 남기고, 그 전에 생성된 Todo 만 복사한다.
+//   (3) shard.count 를 새 샤드 수로 올려서 배포한다. 이제 옮겨간 유저는 새 샤드에서 읽고 쓴다.
+//   (4) 따라잡기: (2) 에 --shard.rebalance.created-after=<(2) 의 cutoff> 를 붙여 실행한다.
+//       cutoff 이후에 생성된 Todo 만 가져오므로, (3) 이후 새 샤드에서 삭제된 Todo 는 되살아나지 않는다.
+//   (5) 정리: --spring.main.web-application-type=none --shard.rebalance.target-count=<새 샤드 수> --shard.rebalance.purge=true
+//       target-count 가 지금의 shard.count 와 다르거나, shard.count 밖의 샤드에 아직 Todo 가 있으면(즉 (3) 전이면) 지우지 않고 실패한다.
+// 생성 시각은 id(UUIDv7)의 앞 48비트로 본다. UUIDv7 이 아닌 예전 id 는 cutoff 전에 생성된 것으로 본다.
+// 복사는 대상 샤드에 없는 id 만 넣으므로 (2) 는 (3) 전까지, (4) 는 (4) 가 끝나기 전까지 몇 번을 다시 실행해도 된다.
+// 대신 (2) 와 (3) 사이에 예전 샤드에서 일어난 수정과 삭제는 옮겨지지 않으므로, 옮겨지는 유저가 많으면 그 사이에는 쓰기를 막는다.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "shard.enabled", havingValue = "true")
+public class TodoShardRebalancer implements ApplicationRunner {
+    private static final String SELECT_USERS = "SELECT DISTINCT user_id FROM todo";
+    private static final String SELECT_TODOS = "SELECT id, done, title, user_id FROM todo WHERE user_id = ?";
+    private static final String SELECT_IDS = "SELECT id FROM todo WHERE user_id = ?";
+    private static final String INSERT_TODO = "INSERT INTO todo (id, done, title, user_id) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_TODOS = "DELETE FROM todo WHERE user_id = ?";
+
+    private static final RowMapper<Object[]> TODO_ROW = (rs, rowNum) ->
+            new Object[]{rs.getBytes(1), rs.getBoolean(2), rs.getString(3), rs.getBytes(4)};
+    private static final RowMapper<UUID> UUID_COLUMN = (rs, rowNum) -> uuid(rs.getBytes(1));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRoutingDataSource shards;
+    private final TodoShards todoShards;
+    private final ConfigurableApplicationContext context;
+    private final int targetCount;
+    private final boolean purge;
+    private final long createdAfter;
+
+    public TodoShardRebalancer(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               ShardRoutingDataSource shards,
+                               TodoShards todoShards,
+                               ConfigurableApplicationContext context,
+                               @Value("${shard.rebalance.target-count:0}") int targetCount,
+                               @Value("${shard.rebalance.purge:false}") boolean purge,
+                               @Value("${shard.rebalance.created-after:0}") long createdAfter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+        this.todoShards = todoShards;
+        this.context = context;
+        this.targetCount = targetCount;
+        this.purge = purge;
+        this.createdAfter = createdAfter;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (targetCount <= 0 && !purge) {
+            return;
+        }
+        if (purge) {
+            purge(targetCount);
+        } else if (createdAfter > 0) {
+            catchUp(targetCount, createdAfter);
+        } else {
+            final long cutoff = System.currentTimeMillis();
+            log.info("Rebalance cutoff is {}. After raising shard.count, run again with --shard.rebalance.created-after={}", cutoff, cutoff);
+            rebalance(targetCount, cutoff);
+        }
+        System.exit(SpringApplication.exit(context));
+    }
+
+    // 모든 샤드를 돌면서 targetCount 개로 나눴을 때 다른 샤드로 가야 하는 유저의, cutoff 전에 생성된 Todo 를 복사한다. 복사한 유저 수를 리턴한다.
+    public int rebalance(final int targetCount, final long cutoff) {
+        return copyAll(targetCount, id -> createdAt(id) < cutoff);
+    }
+
+    // shard.count 를 올린 뒤, 옮겨간 유저가 예전 샤드에 cutoff 이후에 생성한 Todo 만 복사한다. 복사한 유저 수를 리턴한다.
+    public int catchUp(final int targetCount, final long cutoff) {
+        return copyAll(targetCount, id -> createdAt(id) >= cutoff);
+    }
+
+    private int copyAll(final int targetCount, final Predicate<UUID> ids) {
+        if (targetCount > shards.size()) {
+            throw new IllegalArgumentException("Only " + shards.size() + " shard(s) are configured");
+        }
+        int users = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            for (UUID userId : usersOn(shard)) {
+                final int target = TodoShards.shardOf(userId.toString(), targetCount);
+                if (target != shard) {
+                    final int copied = copy(userId, shard, target, ids);
+                    log.info("Copied {} todo(s) of user {} from shard {} to shard {}", copied, userId, shard, target);
+                    users++;
+                }
+            }
+        }
+        log.info("Rebalanced {} user(s) to {} shard(s)", users, targetCount);
+        return users;
+    }
+
+    // 유저의 Todo 중 id 가 ids 에 맞는 것을 from 에서 to 로 복사한다. to 에 이미 있는 id 는 건너뛴다. 새로 넣은 행 수를 리턴한다.
+    public int copy(final UUID userId, final int from, final int to, final Predicate<UUID> ids) {
+        final byte[] user = bytes(userId);
+        final List<Object[]> rows = ShardContext.on(from, () -> jdbcTemplate.query(SELECT_TODOS, TODO_ROW, user));
+        return ShardContext.on(to, () -> transactionTemplate.execute(status -> {
+            final Set<UUID> existing = new HashSet<>(jdbcTemplate.query(SELECT_IDS, UUID_COLUMN, user));
+            final List<Object[]> missing = rows.stream()
+                    .filter(row -> {
+                        final UUID id = uuid((byte[]) row[0]);
+                        return ids.test(id) && !existing.contains(id);
+                    })
+                    .collect(Collectors.toList());
+            jdbcTemplate.batchUpdate(INSERT_TODO, missing);
+            return missing.size();
+        }));
+    }
+
+    // 현재 shard.count 로 보면 다른 샤드에 있어야 하는 유저의 Todo 를 지운다. 지운 유저 수를 리턴한다.
+    // 복사한 직후 shard.count 를 올리기 전에 실행하면 원본을 지우게 되므로, 다음 경우에는 아무것도 지우지 않고 실패한다.
+    //   expectedCount 가 shard.count 와 다르다.
+    //   shard.count 밖의 샤드(아직 라우팅하지 않는 샤드)에 Todo 가 있다.
+    public int purge(final int expectedCount) {
+        if (expectedCount != todoShards.count()) {
+            throw new IllegalStateException("Purge expects " + expectedCount + " shard(s) but shard.count is " + todoShards.count());
+        }
+        for (int shard = todoShards.count(); shard < shards.size(); shard++) {
+            if (!usersOn(shard).isEmpty()) {
+                throw new IllegalStateException("Shard " + shard + " holds todos but is not routed yet. Raise shard.count before purging.");
+            }
+        }
+
+        int users = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            for (UUID userId : usersOn(shard)) {
+                if (todoShards.shardOf(userId.toString()) != shard) {
+                    final int deleted = ShardContext.on(shard, () -> jdbcTemplate.update(DELETE_TODOS, (Object) bytes(userId)));
+                    log.info("Purged {} todo(s) of user {} from shard {}", deleted, userId, shard);
+                    users++;
+                }
+            }
+        }
+        log.info("Purged {} user(s) that no longer belong to their shard", users);
+        return users;
+    }
+
+    private List<UUID> usersOn(final int shard) {
+        return ShardContext.on(shard, () -> jdbcTemplate.query(SELECT_USERS, UUID_COLUMN));
+    }
+
+    // UUIDv7 id 의 생성 시각(epoch 밀리초). 예전 id 는 0 이다.
+    private static long createdAt(final UUID id) {
+        return id.version() == 7 ? id.getMostSignificantBits() >>> 16 : 0;
+    }
+
+    // id 컬럼은 BINARY(16) 이다 (V3__binary_uuid_ids).
+    private static byte[] bytes(final UUID id) {
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+
+    private static UUID uuid(final byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.persistence;
+
+import com.google.common.hash.Hashing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+// 유저의 Todo 가 어느 샤드에 있는지 정한다. userId 의 murmur3 해시를 Guava 의 consistentHash 로 shard.count 개에 나눈다.
+// consistentHash 는 샤드를 하나 늘릴 때 약 1/(n+1) 의 유저만 옮겨지도록 나눈다. 옮기는 것은 TodoShardRebalancer 가 한다.
+// shard.enabled 가 false 면 아무것도 하지 않는다.
+@Component
+public class TodoShards {
+    private final boolean enabled;
+    private final int count;
+
+    public TodoShards(@Value("${shard.enabled:false}") boolean enabled,
+                      @Value("${shard.count:1}") int count) {
+        this.enabled = enabled;
+        this.count = enabled ? count : 1;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int shardOf(final String userId) {
+        return shardOf(userId, count);
+    }
+
+    // shards 개의 샤드로 나눌 때 유저가 가는 샤드. 리밸런싱할 때 새 샤드 수로 계산하는 데도 쓴다.
+    public static int shardOf(final String userId, final int shards) {
+        if (shards <= 1) {
+            return 0;
+        }
+        return Hashing.consistentHash(Hashing.murmur3_32_fixed().hashString(userId, StandardCharsets.UTF_8), shards);
+    }
+
+    // work 의 쿼리를 유저의 샤드로 보낸다.
+    public <T> T on(final String userId, final Supplier<T> work) {
+        if (!enabled) {
+            return work.get();
+        }
+        return ShardContext.on(shardOf(userId), work);
+    }
+}
@@ -2,11 +2,24 @@ package com.example.demo.persistence;
 
 import com.example.demo.model.UserEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.UUID;
+import java.util.stream.Stream;
+
 @Repository
-public interface UserRepository extends JpaRepository<UserEntity, String> {
+public interface UserRepository extends JpaRepository<UserEntity, UUID> {
     UserEntity findByUsername(String username);
     Boolean existsByUsername(String username);
     UserEntity findByUsernameAndPassword(String username, String password);
+    // OAuth 로그인 시 (authProvider, login) 으로 유저를 찾는다. username 유니크 인덱스를 사용한다.
+    UserEntity findByAuthProviderAndUsername(String authProvider, String username);
+
+    // 유저네임 필터를 채울 때 사용한다. 트랜잭션 안에서 호출하고 다 쓰면 닫아야 한다.
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select u.username from UserEntity u")
+    Stream<String> streamAllUsernames();
 }
@@ -21,6 +21,10 @@ import java.io.IOException;
 @Slf4j
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter { // OncePerRequestFilter 상속
+    // EventSource 는 헤더를 붙일 수 없으므로 이 경로에서만 쿼리 파라미터로 한 번 쓰는 티켓을 받는다 (POST /todo/events/ticket).
+    // 액세스 토큰은 쿼리 파라미터로 받지 않는다. 접근 로그, 프록시 로그, 브라우저 기록에 남기 때문이다.
+    private static final String EVENTS_PATH = "/todo/events";
+    private static final String EVENTS_TICKET_PARAM = "ticket";
 
     @Autowired
     private TokenProvider tokenProvider;
@@ -30,12 +34,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter { // OncePerRe
         try {
             // 요청에서 토큰 가져오기.
             String token = parseBearerToken(request);
-            log.info("Filter is running...");
+            log.debug("Filter is running...");
+            String userId = null;
             // 토큰 검사하기. JWT 이므로 인가 서버에 요청하지 않고도 검증 가능.
             if (token != null && !token.equalsIgnoreCase("null")) {
                 // userID 가져오기. 위조된 경우 예외 처리된다.
-                String userId = tokenProvider.validateAndGetUserId(token);
-                log.info("Authenticated user ID: " + userId);
+                userId = tokenProvider.validateAndGetUserId(token);
+            } else if (isEventsRequest(request) && request.getParameter(EVENTS_TICKET_PARAM) != null) {
+                userId = tokenProvider.redeemEventsTicket(request.getParameter(EVENTS_TICKET_PARAM));
+            }
+            if (userId != null) {
+                log.debug("Authenticated user ID: {}", userId);
                 // 인증 완료; SecurityContextHolder 에 등록해야 인증된 사용자라고 생각한다.
                 AbstractAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userId,    // 인증된 사용자의 정보. 문자열이 아니어도 아무거나 넣을 수 있다. 보통 UserDetails 라는 오브젝트를 넣는데, 우리는 안 만들었음.
@@ -65,6 +74,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter { // OncePerRe
         return null;
     }
 
+    private boolean isEventsRequest(HttpServletRequest request) {
+        return "GET".equals(request.getMethod())
+                && EVENTS_PATH.equals(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
     /**
      * 1. 요청의 헤더에서 Bearer 토큰을 가져온다. 이 작업은 parseBearerToken() 메서드에서 이뤄진다.
      * 2. TokenProvider 를 이용해 토큰을 인증하고 UsernamePasswordAuthenticationToken 을 작성한다. 이 오브젝트에 사용자의 인증 정보를 저장하고 SecurityContext 에 인증된 사용자를 등록한다.
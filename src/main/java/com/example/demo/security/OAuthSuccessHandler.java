@@ -22,16 +22,18 @@ public class OAuthSuccessHandler extends SimpleUrlAuthenticationSuccessHandler {
 
     private static final String LOCAL_REDIRECT_URL = "http://localhost:3000";
 
+    // 로그인마다 새로 만들지 않고 빈으로 등록된 TokenProvider 를 사용한다.
+    private final TokenProvider tokenProvider;
+
     @Override
     public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response, Authentication authentication) throws IOException{
-        log.info("auth succeeded");
-        TokenProvider tokenProvider = new TokenProvider();
+        log.debug("auth succeeded");
         String token = tokenProvider.createUser(authentication);
 
         Optional<Cookie> oCookie = Arrays.stream(request.getCookies()).filter(cookie -> cookie.getName().equals(REDIRECT_URI_PARAM)).findFirst();
         Optional<String> redirectUri = oCookie.map(Cookie::getValue);
 
-        log.info("token {}", token);
+        log.debug("token {}", token);
         response.sendRedirect(redirectUri.orElseGet(() -> LOCAL_REDIRECT_URL) + "/sociallogin?token=" + token);
     }
 }
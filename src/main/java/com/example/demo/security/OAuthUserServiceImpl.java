@@ -2,21 +2,43 @@ package com.example.demo.security;
 
 import com.example.demo.model.UserEntity;
 import com.example.demo.persistence.UserRepository;
+import com.example.demo.service.UsernameFilter;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.oauth2.client.userinfo.DefaultOAuth2UserService;
 import org.springframework.security.oauth2.client.userinfo.OAuth2UserRequest;
 import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.TimeUnit;
+
 @Slf4j
 @Service
 public class OAuthUserServiceImpl extends DefaultOAuth2UserService {
+    // (authProvider, login) -> 유저 id 캐시의 최대 크기와 보관 시간
+    private static final long USER_CACHE_SIZE = 10_000;
+    private static final long USER_CACHE_HOURS = 1;
+
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private UsernameFilter usernameFilter;
+    // 매 로그인마다 새로 만들지 않고 스프링이 만든 ObjectMapper 를 재사용한다.
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 한 번 찾거나 만든 OAuth 유저는 다시 조회하지 않는다. 유저 id 는 바뀌지 않으므로 무효화할 일이 없다.
+    private final Cache<String, String> userIds = CacheBuilder.newBuilder()
+            .maximumSize(USER_CACHE_SIZE)
+            .expireAfterWrite(USER_CACHE_HOURS, TimeUnit.HOURS)
+            .build();
 
     public OAuthUserServiceImpl(){
         super();
@@ -26,31 +48,66 @@ public class OAuthUserServiceImpl extends DefaultOAuth2UserService {
         // DefaultOAuth2UserService의 기존 loadUser를 호출한다. 이 메서드가 user-info-uri를 이요해 사용자 정보를 가져오는 부분이다.
         final OAuth2User oAuth2User = super.loadUser(userRequest);
 
-        try {
-            // 디버깅을 돕기 위해 사용자 정보가 어떻게 되는지 로깅한다. 테스팅 시에만 시행해야 한다.
-            log.info("OAuth2User attribute {} ", new ObjectMapper().writeValueAsString(oAuth2User.getAttributes()));
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
+        if(log.isDebugEnabled()){
+            try {
+                // 디버깅을 돕기 위해 사용자 정보가 어떻게 되는지 로깅한다. 테스팅 시에만 시행해야 한다.
+                log.debug("OAuth2User attribute {} ", objectMapper.writeValueAsString(oAuth2User.getAttributes()));
+            } catch (JsonProcessingException e) {
+                log.debug("Could not serialize OAuth2User attributes", e);
+            }
         }
 
         // login 필드를 가져온다.
         final String username = (String) oAuth2User.getAttributes().get("login");
         final String authProvider = userRequest.getClientRegistration().getClientName();
 
-        UserEntity userEntity = null;
+        final String userId = resolveUserId(authProvider, username);
+
+        log.debug("Successfully pulled user info username {} authProvider {}", username, authProvider);
+
+        return new ApplicationOAuth2User(userId, oAuth2User.getAttributes());
+    }
+
+    // (authProvider, login) 으로 유저를 찾고, 없으면 만든다.
+    // 캐시에 있으면 데이터베이스를 거치지 않고, 없으면 한 번의 조회(혹은 insert)로 끝난다.
+    private String resolveUserId(final String authProvider, final String username){
+        final String key = authProvider + ":" + username;
+        final String cached = userIds.getIfPresent(key);
+        if(cached != null){
+            return cached;
+        }
+
+        // 확실히 없는 유저네임이면 조회를 건너뛴다.
+        UserEntity userEntity = usernameFilter.mightExist(username)
+                ? userRepository.findByAuthProviderAndUsername(authProvider, username)
+                : null;
         // 유저가 존재하지 않으면 새로 생성한다.
-        if(!userRepository.existsByUsername(username)){
-            userEntity = UserEntity.builder()
-                    .username(username)
-                    .authProvider(authProvider)
-                    .build();
-            userEntity = userRepository.save(userEntity);
-        } else {
-            userEntity = userRepository.findByUsername(username);
+        if(userEntity == null){
+            userEntity = create(authProvider, username);
         }
 
-        log.info("Successfully pulled user info username () authProvider {}", username, authProvider);
+        final String userId = userEntity.getId().toString();
+        userIds.put(key, userId);
+        return userId;
+    }
 
-        return new ApplicationOAuth2User(userEntity.getId(), oAuth2User.getAttributes());
+    private UserEntity create(final String authProvider, final String username){
+        try {
+            UserEntity userEntity = userRepository.saveAndFlush(UserEntity.builder()
+                    .username(username)
+                    .authProvider(authProvider)
+                    .build());
+            usernameFilter.put(username);
+            return userEntity;
+        } catch (DataIntegrityViolationException e) {
+            // 동시에 같은 유저가 만들어진 경우
+            UserEntity userEntity = userRepository.findByAuthProviderAndUsername(authProvider, username);
+            if(userEntity != null){
+                return userEntity;
+            }
+            // 다른 방식(아이디/패스워드 또는 다른 provider)으로 가입한 유저가 이미 이 유저네임을 쓰고 있는 경우
+            log.warn("Username {} is already taken by another provider", username);
+            throw new OAuth2AuthenticationException(new OAuth2Error("username_taken"), "Username already exists");
+        }
     }
 }
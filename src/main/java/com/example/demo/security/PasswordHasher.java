@@ -0,0 +1,99 @@
+package com.example.demo.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// BCrypt 해시/검증을 요청 스레드가 아닌 전용 스레드 풀에서 실행한다.
+// 로그인이 몰려도 BCrypt 가 쓸 수 있는 코어는 pool-size 개로 제한되고, 대기열(queue-capacity)까지 가득 차면
+// 기다리지 않고 RejectedExecutionException 으로 바로 실패한다. 컨트롤러는 이를 429 로 리턴한다.
+// 연산별 실행 시간은 auth.password.hash, 대기 시간은 auth.password.hash.queue 타이머(op=encode|matches)로 남는다.
+@Slf4j
+@Component
+public class PasswordHasher {
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    // 연산이 두 가지뿐이므로 메트릭은 처음에 한 번만 등록해두고 호출마다 레지스트리를 찾지 않는다.
+    private final Op encodeOp;
+    private final Op matchesOp;
+
+    public PasswordHasher(@Value("${auth.bcrypt.strength:10}") int strength,
+                          @Value("${auth.bcrypt.pool-size:0}") int poolSize,
+                          @Value("${auth.bcrypt.queue-capacity:50}") int queueCapacity,
+                          MeterRegistry meterRegistry) {
+        // strength 를 올리면 새로 만드는 해시부터 적용되고, 기존 해시는 로그인할 때 다시 해시한다(needsRehash).
+        this.encoder = new BCryptPasswordEncoder(strength);
+        // pool-size 가 0 이면 코어의 절반을 사용한다. 나머지 코어는 /todo 요청을 위해 남겨둔다.
+        final int threads = poolSize > 0 ? poolSize : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("bcrypt-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.encodeOp = new Op("encode", meterRegistry);
+        this.matchesOp = new Op("matches", meterRegistry);
+    }
+
+    public CompletableFuture<String> encode(final String rawPassword) {
+        return submit(encodeOp, () -> encoder.encode(rawPassword));
+    }
+
+    public CompletableFuture<Boolean> matches(final String rawPassword, final String encodedPassword) {
+        return submit(matchesOp, () -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    // 현재 설정된 strength 보다 낮은 cost 로 만들어진 해시인지 확인한다.
+    public boolean needsRehash(final String encodedPassword) {
+        return encoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> CompletableFuture<T> submit(final Op op, final Supplier<T> task) {
+        final long submittedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                op.queueTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return op.timer.record(task);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Password hashing pool is saturated. op {} queued {}", op.name, executor.getQueue().size());
+            op.rejected.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static final class Op {
+        private final String name;
+        private final Timer timer;
+        private final Timer queueTimer;
+        private final Counter rejected;
+
+        private Op(final String name, final MeterRegistry meterRegistry) {
+            this.name = name;
+            this.timer = Timer.builder("auth.password.hash").tag("op", name)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.queueTimer = Timer.builder("auth.password.hash.queue").tag("op", name)
+                    .register(meterRegistry);
+            this.rejected = meterRegistry.counter("auth.password.hash.rejected", "op", name);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.demo.security;
+
+import com.example.demo.dto.ResponseDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 유저별 요청 수 제한. WebSecurityConfig 에서 JwtAuthenticationFilter 바로 다음에 실행된다.
+// /todo 는 인증된 userId 별로, /auth 는 클라이언트 IP 별로 제한하고 나머지 경로는 제한하지 않는다.
+// 요청 종류(read: GET/HEAD /todo, write: 그 밖의 /todo, auth: /auth)마다 초당 요청 수(per-second)와 버스트(burst)를 따로 설정한다.
+// 버킷마다 GCRA(다음 요청이 허용되는 이론상 시각 하나)를 AtomicLong 으로 두고 CAS 로 갱신하므로 락을 잡지 않는다.
+// 버킷은 크기가 제한된 캐시에 있고 idle-seconds 동안 요청이 없으면 사라진다. 노드마다 따로 센다.
+@Slf4j
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final String TODO_PATH = "/todo";
+    private static final String AUTH_PATH = "/auth";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+    private final Limit read;
+    private final Limit write;
+    private final Limit auth;
+    // 종류:키 -> 다음 요청이 허용되는 이론상 시각(nanoTime)
+    private final Cache<String, AtomicLong> buckets;
+
+    public RateLimitFilter(@Value("${rate-limit.enabled:true}") boolean enabled,
+                           @Value("${rate-limit.max-buckets:100000}") long maxBuckets,
+                           @Value("${rate-limit.idle-seconds:600}") long idleSeconds,
+                           @Value("${rate-limit.read.per-second:20}") double readPerSecond,
+                           @Value("${rate-limit.read.burst:40}") int readBurst,
+                           @Value("${rate-limit.write.per-second:5}") double writePerSecond,
+                           @Value("${rate-limit.write.burst:20}") int writeBurst,
+                           @Value("${rate-limit.auth.per-second:1}") double authPerSecond,
+                           @Value("${rate-limit.auth.burst:10}") int authBurst) {
+        this.enabled = enabled;
+        this.read = new Limit("read", readPerSecond, readBurst);
+        this.write = new Limit("write", writePerSecond, writeBurst);
+        this.auth = new Limit("auth", authPerSecond, authBurst);
+        this.buckets = CacheBuilder.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(idleSeconds, TimeUnit.SECONDS)
+                .concurrencyLevel(Math.max(4, Runtime.getRuntime().availableProcessors()))
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        final String path = request.getRequestURI().substring(request.getContextPath().length());
+        final Limit limit;
+        final String key;
+        if (path.equals(TODO_PATH) || path.startsWith(TODO_PATH + "/")) {
+            final boolean isRead = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+            limit = isRead ? read : write;
+            key = userIdOrAddress(request);
+        } else if (path.startsWith(AUTH_PATH + "/")) {
+            limit = auth;
+            key = request.getRemoteAddr();
+        } else {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        final long waitNanos = acquire(limit, limit.name + ":" + key);
+        if (waitNanos > 0) {
+            reject(response, limit, waitNanos);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    // 허용되면 0, 아니면 다시 시도할 수 있을 때까지 남은 시간(ns)을 리턴한다.
+    private long acquire(final Limit limit, final String key) {
+        final AtomicLong tat;
+        try {
+            tat = buckets.get(key, () -> new AtomicLong(Long.MIN_VALUE));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+
+        while (true) {
+            final long now = System.nanoTime();
+            final long current = tat.get();
+            // 오래 쉬었다면 지금부터 다시 센다. 그 사이의 여유는 burst 까지만 쌓인다.
+            final long base = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            final long next = base + limit.intervalNanos;
+            final long ahead = next - now;
+            if (ahead > limit.toleranceNanos) {
+                return ahead - limit.toleranceNanos;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private void reject(final HttpServletResponse response, final Limit limit, final long waitNanos) throws IOException {
+        meterRegistry.counter("http.server.requests.rate-limited", "limit", limit.name).increment();
+        final long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        ResponseDTO<Object> body = ResponseDTO.<Object>builder().error("Too many requests. Try again later.").build();
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    // JwtAuthenticationFilter 가 인증한 userId. 토큰이 없거나 잘못된 요청은 IP 로 센다.
+    private static String userIdOrAddress(final HttpServletRequest request) {
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof String) {
+            return "user:" + authentication.getPrincipal();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static final class Limit {
+        private final String name;
+        // 요청 사이의 간격
+        private final long intervalNanos;
+        // 간격보다 얼마나 앞서 와도 허용하는지. burst 개까지 연달아 허용된다.
+        private final long toleranceNanos;
+
+        private Limit(final String name, final double perSecond, final int burst) {
+            this.name = name;
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+            this.toleranceNanos = intervalNanos * Math.max(1, burst);
+        }
+    }
+}
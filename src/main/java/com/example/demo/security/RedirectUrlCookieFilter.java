@@ -21,7 +21,7 @@ public class RedirectUrlCookieFilter extends OncePerRequestFilter {
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         if(request.getRequestURI().startsWith("/auth/authorize")){
             try {
-                log.info("request url {} " + request.getRequestURI());
+                log.debug("request url {}", request.getRequestURI());
                 String redirectUrl = request.getParameter(REDIRECT_URI_PARAM);  // 리퀘스트 파라미터에서 redirectUrl을 가져온다.
 
                 Cookie cookie = new Cookie(REDIRECT_URI_PARAM, redirectUrl);
@@ -1,21 +1,59 @@
 package com.example.demo.security;
 
+import com.example.demo.model.TimeOrderedIds;
 import com.example.demo.model.UserEntity;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 public class TokenProvider {
     private static final String SECRET_KEY = "N3EKNFNkAEKASDdfDFDATKEJQMPdojeP3O3KAJCODJ13MKFNMCK3OEPDOVNAIEP3kd3FDCI3AIF3Zg";
+    // 검증을 마친 토큰 캐시의 최대 크기와 최대 보관 시간. 토큰의 exp 가 더 이르면 exp 까지만 사용한다.
+    private static final long VERIFIED_TOKEN_CACHE_SIZE = 10_000;
+    private static final long VERIFIED_TOKEN_CACHE_MINUTES = 10;
+    // GET /todo/events 를 열 때 쓰는 티켓. 쿼리 파라미터로 넘어가 로그에 남을 수 있으므로 짧게 살고 한 번만 쓴다.
+    private static final String EVENTS_TICKET_AUDIENCE = "todo-events";
+    private static final long EVENTS_TICKET_SECONDS = 30;
+
+    // 설정이 끝난 parser 는 상태를 바꾸지 않으므로 매 요청마다 새로 만들지 않고 재사용한다.
+    private final JwtParser parser = Jwts.parser().setSigningKey(SECRET_KEY);
+
+    // 토큰의 SHA-256 다이제스트 -> 검증된 subject 와 만료 시각.
+    // 같은 토큰이 하루에도 수백 번 들어오므로 서명 검증(HS512)을 한 번만 한다.
+    private final Cache<HashCode, VerifiedToken> verifiedTokens = CacheBuilder.newBuilder()
+            .maximumSize(VERIFIED_TOKEN_CACHE_SIZE)
+            .expireAfterWrite(VERIFIED_TOKEN_CACHE_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    // 이 노드에서 이미 쓴 티켓의 id(jti). 티켓이 만료될 때까지만 기억하면 된다.
+    private final Cache<String, Boolean> usedEventsTickets = CacheBuilder.newBuilder()
+            .expireAfterWrite(EVENTS_TICKET_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    // JWT 검증 결과 카운터. 벤치마크처럼 스프링 없이 만들어도 동작하도록 전역 레지스트리에 등록한다.
+    // 스프링 부트가 만든 레지스트리(prometheus 등)는 전역 레지스트리에 추가되므로 그대로 노출된다.
+    private final Counter cachedValidations = validationCounter("success", "cache");
+    private final Counter verifiedValidations = validationCounter("success", "verify");
+    private final Counter failedValidations = validationCounter("failure", "verify");
 
     // JWT 라이브러리를 이용해 JWT 토큰을 생성한다.
     public String create(UserEntity userEntity){
@@ -23,12 +61,17 @@ public class TokenProvider {
         Date expiryDate = Date.from(
             Instant.now()
                     .plus(1, ChronoUnit.DAYS));
+        return create(userEntity.getId().toString(), expiryDate);
+    }
+
+    // 만료 시각을 정해서 만든다. 테스트에서 곧 만료되는 토큰을 만들 때도 쓴다.
+    String create(String subject, Date expiryDate){
         // JWT Token 생성
         return Jwts.builder()
             // header에 들어갈 내용 및 서명을 하기 위한 SECRET_KEY
             .signWith(SignatureAlgorithm.HS512, SECRET_KEY)
             // payload에 들어갈 내용
-            .setSubject(userEntity.getId()) // sub
+            .setSubject(subject) // sub
             .setIssuer("demo app")      // iss
             .setIssuedAt(new Date())    // iat
             .setExpiration(expiryDate)  // exp
@@ -37,17 +80,75 @@ public class TokenProvider {
 
     // 토큰을 디코딩, 파싱 및 위조여부를 확인한다. 이후에 우리가 원하는 subject 즉 유저의 아이디를 리턴한다.
     // 라이브러리 덕에 우리가 굳이 JSON을 생성, 서명, 인코딩, 디코딩, 파싱하는 작업을 하지 않아도 된다.
+    // 이미 검증한 토큰이면 캐시에서 바로 리턴하고, 아니면 검증 후 캐시한다.
     public String validateAndGetUserId(String token){
+        final HashCode digest = Hashing.sha256().hashString(token, StandardCharsets.UTF_8);
+        final VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if(cached != null){
+            if(cached.expiresAt > System.currentTimeMillis()){
+                cachedValidations.increment();
+                return cached.subject;
+            }
+            // 만료된 토큰은 다시 검증해서 예외가 나도록 한다.
+            verifiedTokens.invalidate(digest);
+        }
+
+        final Claims claims;
+        final String userId;
+        try {
+            claims = verify(token);
+            // 이벤트 티켓은 API 호출에 쓸 수 없다.
+            if(EVENTS_TICKET_AUDIENCE.equals(claims.getAudience())){
+                throw new RuntimeException("Events ticket cannot be used as an access token");
+            }
+            // 예전 토큰의 subject 는 하이픈 없는 32자리 id 이므로, 항상 같은 UUID 문자열로 맞춰서 리턴한다.
+            userId = TimeOrderedIds.parse(claims.getSubject()).toString();
+        } catch (RuntimeException e) {
+            failedValidations.increment();
+            throw e;
+        }
+        verifiedValidations.increment();
+        if(claims.getExpiration() != null){
+            verifiedTokens.put(digest, new VerifiedToken(userId, claims.getExpiration().getTime()));
+        }
+        return userId;
+    }
+
+    // 브라우저의 EventSource 는 헤더를 붙일 수 없으므로 GET /todo/events 는 액세스 토큰 대신 이 티켓을 쿼리 파라미터로 받는다.
+    // 30초 뒤에 만료되고 한 번 쓰면 이 노드에서는 다시 쓸 수 없다. 액세스 토큰으로는 쓸 수 없다.
+    public String createEventsTicket(final String userId){
+        return Jwts.builder()
+            .signWith(SignatureAlgorithm.HS512, SECRET_KEY)
+            .setSubject(userId)
+            .setAudience(EVENTS_TICKET_AUDIENCE)
+            .setId(UUID.randomUUID().toString())
+            .setIssuedAt(new Date())
+            .setExpiration(Date.from(Instant.now().plusSeconds(EVENTS_TICKET_SECONDS)))
+            .compact();
+    }
+
+    // 티켓을 검증하고 userId 를 리턴한다. 위조됐거나, 만료됐거나, 이벤트 티켓이 아니거나, 이미 쓴 티켓이면 예외를 던진다.
+    // 한 번만 쓸 수 있는지는 이 노드에서만 확인한다. 다른 노드에서는 만료될 때까지(최대 30초) 한 번 더 쓸 수 있다.
+    public String redeemEventsTicket(final String ticket){
+        final Claims claims = verify(ticket);
+        if(!EVENTS_TICKET_AUDIENCE.equals(claims.getAudience()) || claims.getId() == null){
+            throw new RuntimeException("Not an events ticket");
+        }
+        if(usedEventsTickets.asMap().putIfAbsent(claims.getId(), Boolean.TRUE) != null){
+            throw new RuntimeException("Events ticket is already used");
+        }
+        return TimeOrderedIds.parse(claims.getSubject()).toString();
+    }
+
+    // 캐시를 거치지 않고 서명과 만료를 검증한다.
+    Claims verify(String token){
         // parseClaimsJws 메서드가 Base 64로 디코딩 및 파싱.
         // 즉, 헤더와 페이로드를 setSigningKey로 넘어온 시크릿을 이용해 서명 후, token의 서명과 비교.
         // 위조되지 않았다면 페이로드(Claims) 리턴, 위조라면 예외를 날림
         // 그 중 우리는 userId가 필요하므로 getBody를 부른다.
-        Claims claims = Jwts.parser()
-            .setSigningKey(SECRET_KEY)
+        return parser
             .parseClaimsJws(token)
             .getBody();
-
-        return claims.getSubject();
     }
 
     public String createUser(final Authentication authentication){
@@ -63,4 +164,21 @@ public class TokenProvider {
             .signWith(SignatureAlgorithm.HS512, SECRET_KEY)
             .compact();
     }
+
+    private static Counter validationCounter(String result, String source){
+        return Counter.builder("auth.jwt.validation")
+                .tag("result", result)
+                .tag("source", source)
+                .register(Metrics.globalRegistry);
+    }
+
+    private static class VerifiedToken {
+        private final String subject;
+        private final long expiresAt;
+
+        private VerifiedToken(String subject, long expiresAt){
+            this.subject = subject;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
@@ -0,0 +1,181 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.TodoEventDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 유저별 SSE 구독(GET /todo/events)을 관리하고 TodoService 가 커밋 후에 발행한 변경을 내려보낸다.
+// - 노드가 들고 있는 연결 수는 max-connections 로 제한한다. 넘으면 구독을 거절하고 컨트롤러는 503 을 리턴한다.
+// - 연결마다 buffer-size 크기의 큐가 있고, 전송은 sender-threads 개의 스레드가 한다. 발행하는 쪽은 큐에 넣기만 한다.
+//   느린 클라이언트의 큐가 가득 차면 연결을 끊는다. 클라이언트는 다시 연결해서 GET /todo 로 전체를 받으면 된다.
+// - heartbeat-seconds 마다 주석 한 줄을 보내 프록시가 연결을 끊지 않게 하고 끊긴 연결을 정리한다.
+// 구독은 이 노드에서 일어난 변경만 받는다.
+@Slf4j
+@Component
+public class TodoEventBroker {
+    private static final String HEARTBEAT = "heartbeat";
+
+    private final int maxConnections;
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final ExecutorService sender;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    public TodoEventBroker(@Value("${todo.events.max-connections:1000}") int maxConnections,
+                           @Value("${todo.events.buffer-size:100}") int bufferSize,
+                           @Value("${todo.events.timeout-minutes:30}") long timeoutMinutes,
+                           @Value("${todo.events.sender-threads:4}") int senderThreads,
+                           MeterRegistry meterRegistry) {
+        this.maxConnections = maxConnections;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+        // 연결마다 동시에 하나의 전송 작업만 있으므로 대기열은 연결 수를 넘지 않는다.
+        this.sender = Executors.newFixedThreadPool(senderThreads, new CustomizableThreadFactory("todo-events-"));
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("todo.events.connections", connections);
+    }
+
+    // 구독을 등록한다. 연결 수가 가득 찼으면 RejectedExecutionException 을 던진다.
+    public SseEmitter subscribe(final String userId) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            meterRegistry.counter("todo.events.rejected").increment();
+            throw new RejectedExecutionException("Too many event subscriptions");
+        }
+
+        final SseEmitter emitter = new SseEmitter(timeoutMillis);
+        final Subscriber subscriber = new Subscriber(userId, emitter, bufferSize);
+        subscribers.compute(userId, (key, set) -> {
+            final Set<Subscriber> current = set == null ? ConcurrentHashMap.newKeySet() : set;
+            current.add(subscriber);
+            return current;
+        });
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+        return emitter;
+    }
+
+    // 유저의 모든 구독에 이벤트를 보낸다. 보내는 것은 sender 스레드가 하므로 바로 리턴한다.
+    public void publish(final String userId, final TodoEventDTO event) {
+        for (Subscriber subscriber : subscribers.getOrDefault(userId, Collections.emptySet())) {
+            enqueue(subscriber, SseEmitter.event().name(event.getType()).data(event));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${todo.events.heartbeat-seconds:15}", timeUnit = TimeUnit.SECONDS)
+    public void heartbeat() {
+        for (Set<Subscriber> set : subscribers.values()) {
+            for (Subscriber subscriber : set) {
+                if (subscriber.queue.isEmpty()) {
+                    enqueue(subscriber, SseEmitter.event().comment(HEARTBEAT));
+                }
+            }
+        }
+    }
+
+    private void enqueue(final Subscriber subscriber, final SseEmitter.SseEventBuilder event) {
+        if (!subscriber.queue.offer(event)) {
+            log.debug("Event buffer of user {} is full. Closing the connection.", subscriber.userId);
+            meterRegistry.counter("todo.events.overflow").increment();
+            subscriber.emitter.complete();
+            unsubscribe(subscriber);
+            return;
+        }
+        // 이미 이 연결을 보내고 있는 스레드가 있으면 그 스레드가 마저 보낸다.
+        if (subscriber.draining.compareAndSet(false, true)) {
+            startDraining(subscriber);
+        }
+    }
+
+    // sender 스레드에서 연결의 큐를 보낸다. 애플리케이션이 내려가는 중이라 sender 가 거절하면 그 연결을 닫는다.
+    // publish 는 커밋이 끝난 뒤(afterCommit)에 불리므로 여기서 예외를 던지면 이미 반영된 쓰기가 실패한 것처럼 보인다.
+    private void startDraining(final Subscriber subscriber) {
+        try {
+            sender.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            log.debug("Event sender is shut down. Closing the connection of user {}.", subscriber.userId);
+            subscriber.draining.set(false);
+            subscriber.emitter.complete();
+            unsubscribe(subscriber);
+        }
+    }
+
+    private void drain(final Subscriber subscriber) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while ((event = subscriber.queue.poll()) != null) {
+                subscriber.emitter.send(event);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // 클라이언트가 연결을 끊었다.
+            subscriber.emitter.completeWithError(e);
+            unsubscribe(subscriber);
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // 플래그를 내리는 사이에 들어온 이벤트가 있으면 다시 보낸다.
+        if (!subscriber.queue.isEmpty() && subscriber.draining.compareAndSet(false, true)) {
+            startDraining(subscriber);
+        }
+    }
+
+    private void unsubscribe(final Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        connections.decrementAndGet();
+        subscriber.queue.clear();
+        subscribers.computeIfPresent(subscriber.userId, (key, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Set<Subscriber> set : subscribers.values()) {
+            for (Subscriber subscriber : set) {
+                subscriber.emitter.complete();
+            }
+        }
+        sender.shutdown();
+    }
+
+    private static final class Subscriber {
+        private final String userId;
+        private final SseEmitter emitter;
+        private final Queue<SseEmitter.SseEventBuilder> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(String userId, SseEmitter emitter, int bufferSize) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo.service;
+
+import com.example.demo.metrics.SqlStatementCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// TodoController 의 데이터베이스 작업을 실행한다.
+// todo.async.enabled 가 true 면 크기와 대기열이 제한된 전용 스레드 풀에서 실행해 톰캣 스레드를 붙잡지 않는다.
+// 대기열까지 가득 차면 기다리지 않고 RejectedExecutionException 으로 실패한 future 를 바로 리턴한다.
+// false 면 지금처럼 요청 스레드에서 바로 실행한다.
+// 요청의 SQL 문 카운터(SqlStatementCounter)는 작업 스레드로 옮겨서 계속 센다.
+// StreamingResponseBody 로 응답하는 요청(stream=true, export, import)은 응답을 쓰는 동안 데이터베이스를 읽고 쓰지만
+// 스프링 MVC 의 비동기 스레드(spring.task.execution)에서 실행된다. 그래서 동시에 실행되는 수를 max-streams 로 따로 제한한다.
+@Slf4j
+@Component
+public class TodoExecutor {
+    private final ThreadPoolExecutor executor;
+    private final int maxStreams;
+    private final Semaphore streams;
+
+    public TodoExecutor(@Value("${todo.async.enabled:false}") boolean enabled,
+                        @Value("${todo.async.pool-size:10}") int poolSize,
+                        @Value("${todo.async.queue-capacity:100}") int queueCapacity,
+                        @Value("${todo.async.max-streams:8}") int maxStreams) {
+        this.maxStreams = maxStreams;
+        this.streams = new Semaphore(maxStreams);
+        this.executor = !enabled ? null : new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("todo-db-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public <T> CompletableFuture<T> submit(final Supplier<T> task) {
+        if (executor == null) {
+            try {
+                return CompletableFuture.completedFuture(task.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        final AtomicInteger statements = SqlStatementCounter.current();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                SqlStatementCounter.bind(statements);
+                try {
+                    return task.get();
+                } finally {
+                    SqlStatementCounter.clear();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Todo executor is saturated. active {} queued {}", executor.getActiveCount(), executor.getQueue().size());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // 스트리밍 응답을 하나 시작할 수 있으면 true. true 를 받았다면 응답을 다 쓴 뒤 반드시 releaseStream 을 호출해야 한다.
+    // todo.async.enabled 와 관계없이 항상 제한한다.
+    public boolean tryAcquireStream() {
+        if (streams.tryAcquire()) {
+            return true;
+        }
+        log.warn("Too many streaming todo responses. max {}", maxStreams);
+        return false;
+    }
+
+    public void releaseStream() {
+        streams.release();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo.service;
+
+import com.example.demo.model.TodoEntity;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// 유저별 Todo 리스트 캐시. TodoRepository.findByUserId 앞에 놓인다.
+// 크기와 TTL 로 제한되고, Todo 가 바뀌면 TodoService 가 커밋 후에 invalidate 한다.
+// 히트/미스/eviction 수는 todo.list 라는 이름의 cache.* 메트릭으로 노출된다.
+@Component
+public class TodoListCache {
+    private final Cache<String, List<TodoEntity>> cache;
+    private final TodoListVersions versions;
+
+    public TodoListCache(@Value("${todo.cache.maximum-size:10000}") long maximumSize,
+                         @Value("${todo.cache.expire-seconds:300}") long expireSeconds,
+                         TodoListVersions versions,
+                         MeterRegistry meterRegistry) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.versions = versions;
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "todo.list");
+    }
+
+    // 캐시된 리스트를 리턴하고, 없으면 loader 로 읽어와 캐시한다.
+    // 리턴된 리스트와 엔티티는 다른 요청과 공유되므로 수정하면 안 된다.
+    public List<TodoEntity> get(final String userId, final Function<String, List<TodoEntity>> loader) {
+        final List<TodoEntity> cached = cache.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        // 읽는 도중에 변경이 커밋되면 버전이 바뀐다. 그런 경우에는 읽은 값을 캐시하지 않는다.
+        final long version = versions.current(userId);
+        final List<TodoEntity> loaded = copyOf(loader.apply(userId));
+        if (versions.current(userId) == version) {
+            cache.put(userId, loaded);
+        }
+        return loaded;
+    }
+
+    public void invalidate(final String userId) {
+        cache.invalidate(userId);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    // 영속성 컨텍스트에 붙어있는 엔티티를 그대로 캐시하지 않도록 복사본을 만든다.
+    private static List<TodoEntity> copyOf(final List<TodoEntity> entities) {
+        final ImmutableList.Builder<TodoEntity> copies = ImmutableList.builderWithExpectedSize(entities.size());
+        for (TodoEntity entity : entities) {
+            copies.add(TodoEntity.builder()
+                    .id(entity.getId())
+                    .userId(entity.getUserId())
+                    .title(entity.getTitle())
+                    .done(entity.isDone())
+                    .build());
+        }
+        return copies.build();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.demo.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+// 유저별 Todo 리스트 버전.
+// Todo 가 생성/수정/삭제될 때마다 증가하므로 클라이언트는 버전을 비교해 자신의 상태가 최신인지 알 수 있다.
+// 버전은 이 노드의 메모리에만 있다. 항목이 만료되거나 밀려나면 현재 시각(ms)으로 다시 시작하므로
+// 이전에 내려준 값보다 작아지지 않고, 다른 노드에서 일어난 변경도 만료 시간 안에는 반영된다.
+@Component
+public class TodoListVersions {
+    private final Cache<String, Long> versions;
+
+    public TodoListVersions(@Value("${todo.version.maximum-size:100000}") long maximumSize,
+                            @Value("${todo.version.expire-seconds:300}") long expireSeconds) {
+        this.versions = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    // 현재 버전
+    public long current(final String userId) {
+        return versions.asMap().computeIfAbsent(userId, key -> System.currentTimeMillis());
+    }
+
+    // 리스트가 바뀌었을 때 호출한다. 증가된 버전을 리턴한다.
+    public long increment(final String userId) {
+        return versions.asMap().merge(userId, System.currentTimeMillis(), (old, now) -> Math.max(old + 1, now));
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.demo.service;
+
+import com.example.demo.model.TodoEntity;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// 유저별 Todo 제목 역색인. GET /todo/search 가 데이터베이스의 LIKE '%...%' 대신 사용한다.
+// 색인은 검색할 때 없으면 Todo 리스트로 만들고(TodoListCache 를 거친다), 생성/수정/삭제는 TodoService 가 커밋 후에 반영한다.
+// 배치 변경은 하나씩 반영하지 않고 색인을 버려서 다음 검색 때 다시 만든다.
+// 유저 수(maximum-users)로 크기를 제한하고, idle-seconds 동안 검색하지 않은 유저의 색인은 버린다.
+// 히트/미스/eviction 수는 todo.search 라는 이름의 cache.* 메트릭으로 노출된다.
+@Component
+public class TodoSearchIndex {
+    // 만드는 도중에 반영되지 못한 변경이 있더라도 이 시간이 지나면 다시 만든다.
+    private static final long REBUILD_MINUTES = 30;
+
+    private final Cache<String, UserIndex> indexes;
+    private final TodoListVersions versions;
+
+    public TodoSearchIndex(@Value("${todo.search.maximum-users:10000}") long maximumUsers,
+                           @Value("${todo.search.idle-seconds:600}") long idleSeconds,
+                           TodoListVersions versions,
+                           MeterRegistry meterRegistry) {
+        this.indexes = CacheBuilder.newBuilder()
+                .maximumSize(maximumUsers)
+                .expireAfterAccess(idleSeconds, TimeUnit.SECONDS)
+                .expireAfterWrite(REBUILD_MINUTES, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        this.versions = versions;
+        GuavaCacheMetrics.monitor(meterRegistry, indexes, "todo.search");
+    }
+
+    // query 의 모든 검색어와 일치하는 Todo 를 id 순으로 limit 개까지 리턴한다.
+    public List<TodoEntity> search(final String userId, final String query, final int limit,
+                                   final Supplier<List<TodoEntity>> loader) {
+        UserIndex index = indexes.getIfPresent(userId);
+        if (index == null) {
+            // 읽는 도중에 변경이 커밋되면 버전이 바뀐다. 그런 경우에는 만든 색인을 캐시하지 않는다.
+            final long version = versions.current(userId);
+            index = new UserIndex();
+            for (TodoEntity entity : loader.get()) {
+                index.put(entity);
+            }
+            if (versions.current(userId) == version) {
+                indexes.put(userId, index);
+            }
+        }
+        return index.search(TodoSearchTokenizer.queryTerms(query), limit);
+    }
+
+    // 생성/수정된 Todo 를 반영한다. 아직 색인이 없는 유저라면 다음 검색 때 만든다.
+    public void put(final TodoEntity entity) {
+        final UserIndex index = indexes.getIfPresent(entity.getUserId().toString());
+        if (index != null) {
+            index.put(entity);
+        }
+    }
+
+    public void remove(final String userId, final UUID id) {
+        final UserIndex index = indexes.getIfPresent(userId);
+        if (index != null) {
+            index.remove(id);
+        }
+    }
+
+    public void invalidate(final String userId) {
+        indexes.invalidate(userId);
+    }
+
+    // 한 유저의 색인. 변경과 검색이 동시에 올 수 있으므로 메서드 단위로 동기화한다. 유저마다 락이 따로 있다.
+    private static final class UserIndex {
+        private final Map<UUID, TodoEntity> todos = new HashMap<>();
+        private final Map<UUID, Set<String>> termsById = new HashMap<>();
+        // 색인어 -> Todo id. 접두어 검색을 위해 정렬해둔다.
+        private final TreeMap<String, Set<UUID>> postings = new TreeMap<>();
+
+        synchronized void put(final TodoEntity entity) {
+            remove(entity.getId());
+            // 다른 곳에서 엔티티를 바꿔도 색인이 따라 바뀌지 않도록 복사해서 보관한다.
+            final TodoEntity copy = TodoEntity.builder()
+                    .id(entity.getId())
+                    .userId(entity.getUserId())
+                    .title(entity.getTitle())
+                    .done(entity.isDone())
+                    .build();
+            final Set<String> terms = TodoSearchTokenizer.indexTerms(copy.getTitle());
+            todos.put(copy.getId(), copy);
+            termsById.put(copy.getId(), terms);
+            for (String term : terms) {
+                postings.computeIfAbsent(term, key -> new HashSet<>()).add(copy.getId());
+            }
+        }
+
+        synchronized void remove(final UUID id) {
+            todos.remove(id);
+            final Set<String> terms = termsById.remove(id);
+            if (terms == null) {
+                return;
+            }
+            for (String term : terms) {
+                final Set<UUID> ids = postings.get(term);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+
+        synchronized List<TodoEntity> search(final List<TodoSearchTokenizer.Term> terms, final int limit) {
+            if (terms.isEmpty()) {
+                return Collections.emptyList();
+            }
+            Set<UUID> matched = null;
+            for (TodoSearchTokenizer.Term term : terms) {
+                final Set<UUID> ids = lookup(term);
+                if (matched == null) {
+                    matched = new TreeSet<>(ids);
+                } else {
+                    matched.retainAll(ids);
+                }
+                if (matched.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+
+            final List<TodoEntity> results = new ArrayList<>(Math.min(limit, matched.size()));
+            for (UUID id : matched) {
+                if (results.size() == limit) {
+                    break;
+                }
+                results.add(todos.get(id));
+            }
+            return results;
+        }
+
+        private Set<UUID> lookup(final TodoSearchTokenizer.Term term) {
+            if (!term.prefix) {
+                return postings.getOrDefault(term.text, Collections.emptySet());
+            }
+            final SortedMap<String, Set<UUID>> range = postings.subMap(term.text, term.text + Character.MAX_VALUE);
+            if (range.size() == 1) {
+                return range.values().iterator().next();
+            }
+            final Set<UUID> ids = new HashSet<>();
+            for (Set<UUID> value : range.values()) {
+                ids.addAll(value);
+            }
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.demo.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Todo 제목을 검색어 단위로 자른다.
+// 영문/숫자는 단어 단위로 색인하고 검색어는 접두어로 찾는다 ("gro" -> "groceries").
+// 한글(과 한자, 가나)은 띄어쓰기와 조사가 제각각이므로 음절 하나와 연속된 두 음절(bigram)을 색인하고,
+// 검색어의 bigram 이 모두 있는 제목을 찾는다 ("장보기" -> "장보", "보기"). 한 음절 검색어는 음절로 찾는다.
+final class TodoSearchTokenizer {
+    private TodoSearchTokenizer() {
+    }
+
+    // 검색어 하나. prefix 면 이 문자열로 시작하는 모든 색인어와 일치한다.
+    static final class Term {
+        final String text;
+        final boolean prefix;
+
+        Term(String text, boolean prefix) {
+            this.text = text;
+            this.prefix = prefix;
+        }
+    }
+
+    static Set<String> indexTerms(final String text) {
+        final Set<String> terms = new LinkedHashSet<>();
+        for (Run run : runs(text)) {
+            if (!run.cjk) {
+                terms.add(run.text);
+                continue;
+            }
+            final int[] syllables = run.text.codePoints().toArray();
+            for (int i = 0; i < syllables.length; i++) {
+                terms.add(new String(syllables, i, 1));
+                if (i + 1 < syllables.length) {
+                    terms.add(new String(syllables, i, 2));
+                }
+            }
+        }
+        return terms;
+    }
+
+    static List<Term> queryTerms(final String query) {
+        final List<Term> terms = new ArrayList<>();
+        for (Run run : runs(query)) {
+            if (!run.cjk) {
+                terms.add(new Term(run.text, true));
+                continue;
+            }
+            final int[] syllables = run.text.codePoints().toArray();
+            if (syllables.length == 1) {
+                terms.add(new Term(run.text, false));
+            }
+            for (int i = 0; i + 1 < syllables.length; i++) {
+                terms.add(new Term(new String(syllables, i, 2), false));
+            }
+        }
+        return terms;
+    }
+
+    private static final class Run {
+        private final String text;
+        private final boolean cjk;
+
+        private Run(String text, boolean cjk) {
+            this.text = text;
+            this.cjk = cjk;
+        }
+    }
+
+    // 정규화(NFKC, 소문자)한 뒤 같은 종류의 글자가 이어진 구간으로 나눈다. 문장부호와 공백은 버린다.
+    private static List<Run> runs(final String text) {
+        final List<Run> runs = new ArrayList<>();
+        if (text == null) {
+            return runs;
+        }
+        final String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        final StringBuilder current = new StringBuilder();
+        boolean currentCjk = false;
+        for (int i = 0; i < normalized.length(); ) {
+            final int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (!Character.isLetterOrDigit(codePoint)) {
+                flush(runs, current, currentCjk);
+                continue;
+            }
+            final boolean cjk = isCjk(codePoint);
+            if (current.length() > 0 && cjk != currentCjk) {
+                flush(runs, current, currentCjk);
+            }
+            currentCjk = cjk;
+            current.appendCodePoint(codePoint);
+        }
+        flush(runs, current, currentCjk);
+        return runs;
+    }
+
+    private static void flush(final List<Run> runs, final StringBuilder current, final boolean cjk) {
+        if (current.length() > 0) {
+            runs.add(new Run(current.toString(), cjk));
+            current.setLength(0);
+        }
+    }
+
+    private static boolean isCjk(final int codePoint) {
+        final Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HANGUL
+                || script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA;
+    }
+}
@@ -1,19 +1,84 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.TodoBatchItemDTO;
+import com.example.demo.dto.TodoBatchResultDTO;
+import com.example.demo.dto.TodoDTO;
+import com.example.demo.dto.TodoEventDTO;
+import com.example.demo.model.TimeOrderedIds;
 import com.example.demo.model.TodoEntity;
+import com.example.demo.persistence.ReadYourWrites;
 import com.example.demo.persistence.TodoRepository;
+import com.example.demo.persistence.TodoShards;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 public class TodoService {
+    // 배치 한 번에 처리할 수 있는 최대 변경 수
+    private static final int MAX_BATCH_SIZE = 500;
+    // 가져오기에서 한 트랜잭션으로 저장할 Todo 수. hibernate.jdbc.batch_size 의 배수로 잡는다.
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+
     @Autowired
     private TodoRepository repository;
+    @Autowired
+    private TodoListVersions versions;
+    @Autowired
+    private TodoListCache listCache;
+    // 캐시 미스로 데이터베이스에서 읽은 리스트의 크기 분포
+    private final DistributionSummary findByUserIdSize;
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private ReadYourWrites readYourWrites;
+    @Autowired
+    private TodoSearchIndex searchIndex;
+    @Autowired
+    private TodoEventBroker events;
+    @Autowired
+    private TodoWriteBuffer writeBuffer;
+    // shard.enabled 면 유저의 Todo 쿼리를 그 유저의 샤드로 보낸다. 유저 단위가 아닌 쿼리는 0 번 샤드로 간다.
+    @Autowired
+    private TodoShards shards;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public TodoService(MeterRegistry meterRegistry){
+        this.findByUserIdSize = DistributionSummary.builder("todo.repository.find-by-user-id.size")
+                .baseUnit("rows")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
     public String testService(){
         // return "Test Service";
 
@@ -27,16 +92,30 @@ public class TodoService {
     }
 
     // create
+    @Timed("todo.service")
     public List<TodoEntity> create(final TodoEntity entity){
+        createItem(entity);
+
+        return retrieve(entity.getUserId().toString());
+
+    }
+
+    // 생성한 엔티티만 리턴한다. 리스트 전체를 다시 읽지 않는다.
+    @Timed("todo.service")
+    public TodoEntity createItem(final TodoEntity entity){
         // Validations
         validate(entity);
 
-        repository.save(entity);
-
-        log.info("Entity Id : {} is saved.", entity.getId());
+        return shards.on(entity.getUserId().toString(), () -> {
+            repository.save(entity);
 
-        return repository.findByUserId(entity.getUserId());
+            log.debug("Entity Id : {} is saved.", entity.getId());
 
+            changed(entity.getUserId());
+            afterCommit(() -> searchIndex.put(entity));
+            published(TodoEventDTO.CREATED, entity);
+            return entity;
+        });
     }
 
     // 리팩토링 메서드
@@ -57,29 +136,108 @@ public class TodoService {
     }
 
     // 검색
+    // 캐시에 있으면 데이터베이스를 읽지 않는다.
+    @Timed("todo.service")
     public List<TodoEntity> retrieve(final String userId){
-        return repository.findByUserId(userId);
+        // write-behind 모드에서 아직 반영되지 않은 수정을 덮어씌운다.
+        return writeBuffer.overlay(userId, listCache.get(userId, key -> {
+            // 방금 쓴 유저라면 레플리카가 아니라 프라이머리에서 읽는다.
+            final List<TodoEntity> entities = shards.on(key, () -> readYourWrites.read(key, () -> repository.findByUserId(TimeOrderedIds.parse(key))));
+            findByUserIdSize.record(entities.size());
+            return entities;
+        }));
+    }
+
+    // 제목 검색. 유저의 검색 색인에서 찾으므로 데이터베이스를 LIKE 로 훑지 않는다.
+    // 색인이 없으면 retrieve 로 리스트를 가져와 만든다.
+    @Timed("todo.service")
+    public List<TodoEntity> search(final String userId, final String query, final int limit){
+        if(query == null || query.isBlank()){
+            throw new RuntimeException("Query cannot be empty.");
+        }
+        return searchIndex.search(userId, query, limit, () -> retrieve(userId));
+    }
+
+    // 유저의 Todo 를 id 순으로 한 행씩 읽어 action 에 넘긴다. 리스트를 만들지 않으므로 크기와 관계없이 메모리 사용량이 일정하다.
+    // 넘긴 엔티티는 바로 영속성 컨텍스트에서 분리하므로 action 밖으로 참조를 가지고 나가면 안 된다. 캐시는 거치지 않는다.
+    @Timed("todo.service")
+    @Transactional(readOnly = true)
+    public void forEach(final String userId, final Consumer<TodoEntity> action){
+        // 커넥션은 첫 쿼리에서 가져오므로 트랜잭션이 시작된 뒤에 정해도 프라이머리(또는 유저의 샤드)로 간다.
+        shards.on(userId, () -> readYourWrites.read(userId, () -> {
+            try (Stream<TodoEntity> entities = repository.streamByUserId(TimeOrderedIds.parse(userId))) {
+                entities.forEach(entity -> {
+                    action.accept(writeBuffer.overlay(entity));
+                    entityManager.detach(entity);
+                });
+            }
+            return null;
+        }));
+    }
+
+    // 페이지 단위 검색. afterId 다음부터 id 순으로 가져온다.
+    // 다음 페이지가 있는지 알 수 있도록 limit + 1 개까지 가져오므로, 잘라내는 것은 호출하는 쪽의 몫이다.
+    @Timed("todo.service")
+    public List<TodoEntity> retrievePage(final String userId, final String afterId, final int limit){
+        final PageRequest page = PageRequest.of(0, limit + 1);
+        final UUID user = TimeOrderedIds.parse(userId);
+        if(afterId == null){
+            return writeBuffer.overlay(userId, shards.on(userId, () -> readYourWrites.read(userId, () -> repository.findByUserIdOrderByIdAsc(user, page))));
+        }
+        final UUID after = TimeOrderedIds.parse(afterId);
+        return writeBuffer.overlay(userId, shards.on(userId, () -> readYourWrites.read(userId, () -> repository.findByUserIdAndIdGreaterThanOrderByIdAsc(user, after, page))));
     }
 
     // 수정
+    @Timed("todo.service")
     public List<TodoEntity> update(final TodoEntity entity){
+        updateItem(entity);
+
+        // 2.3.2 Retrieve Todo에서 만든 메서드를 이용해 유저의 모든 Todo 리스트를 리턴한다.
+        return retrieve(entity.getUserId().toString());
+    }
+
+    // 수정된 엔티티만 리턴한다. 존재하지 않는 엔티티였다면 비어있는 Optional 을 리턴한다.
+    @Timed("todo.service")
+    public Optional<TodoEntity> updateItem(final TodoEntity entity){
         // (1) 저장할 엔티티가 유효한지 확인한다. 이 메서드는 2.3.1 Create Todo 에서 구현했다.
         validate(entity);
 
         // (2) 넘겨받은 엔티티 id를 이용해 TodoEntity를 가져온다. 존재하지 않는 엔티티는 업데이트 할 수 없기 때문이다.
-        final Optional<TodoEntity> original = repository.findById(entity.getId());
+        // 수정하기 전에 읽는 것이므로 레플리카가 아니라 프라이머리에서 읽는다.
+        // 수정은 요청한 유저의 샤드에서 한다. 다른 유저의 Todo 는 batch 와 같이 없는 것으로 취급한다.
+        return shards.on(entity.getUserId().toString(), () -> {
+            final Optional<TodoEntity> original = readYourWrites.onPrimary(() -> repository.findById(entity.getId()))
+                    .filter(todo -> entity.getUserId().equals(todo.getUserId()));
+            if(original.isEmpty()){
+                return original;
+            }
 
-        original.ifPresent(todo -> {
-            // (3) 반환된 TodoEntity가 존재하면 값을 새 entity의 값으로 덮어 씌운다.
-            todo.setTitle(entity.getTitle());
-            todo.setDone(entity.isDone());
+            // write-behind 모드면 저장하지 않고 버퍼에 넣고 바로 리턴한다. 데이터베이스에는 TodoWriteBuffer 가 모아서 반영한다.
+            // 존재와 주인은 위에서 확인했으므로, 그 사이에 삭제되지 않았다면 버퍼의 수정은 반영된다.
+            if(writeBuffer.offer(entity)){
+                // 유저의 리스트가 바뀌었으므로 버전(ETag)을 올린다. 캐시된 리스트에는 읽을 때 버퍼가 덮어씌워진다.
+                versions.increment(entity.getUserId().toString());
+                // 검색 색인은 버퍼를 거치지 않으므로 바로 반영한다. 반영된 뒤에 TodoWriteBuffer 가 같은 값으로 한 번 더 넣는다.
+                searchIndex.put(entity);
+                return Optional.of(entity);
+            }
 
-            // (4) 데이터베이스에 새 값을 저장한다.
-            repository.save(todo);
-        });
+            original.ifPresent(todo -> {
+                // (3) 반환된 TodoEntity가 존재하면 값을 새 entity의 값으로 덮어 씌운다.
+                todo.setTitle(entity.getTitle());
+                todo.setDone(entity.isDone());
 
-        // 2.3.2 Retrieve Todo에서 만든 메서드를 이용해 유저의 모든 Todo 리스트를 리턴한다.
-        return retrieve(entity.getUserId());
+                // (4) 데이터베이스에 새 값을 저장한다.
+                repository.save(todo);
+
+                changed(entity.getUserId());
+                afterCommit(() -> searchIndex.put(todo));
+                published(TodoEventDTO.UPDATED, todo);
+            });
+
+            return original;
+        });
     }
 
     /*
@@ -106,13 +264,31 @@ public class TodoService {
     *
     * */
 
+    @Timed("todo.service")
     public List<TodoEntity> delete(final TodoEntity entity){
+        deleteItem(entity);
+
+        // (5) 새 Todo 리스트를 가져와 리턴한다.
+        return retrieve(entity.getUserId().toString());
+    }
+
+    // 삭제한 엔티티만 리턴한다. 존재하지 않거나 다른 유저의 엔티티였다면 아무것도 하지 않고 비어있는 Optional 을 리턴한다.
+    @Timed("todo.service")
+    public Optional<TodoEntity> deleteItem(final TodoEntity entity){
         // (1) 저장한 엔티티가 유효한지 확인한다. 이 메서드는 2.3.1 Create Todo에서 구현했다.
         validate(entity);
+        // 삭제된 Todo 에 버퍼의 수정이 나중에 반영되지 않도록 버린다.
+        writeBuffer.discard(entity.getUserId().toString(), Collections.singletonList(entity.getId()));
 
+        final Optional<TodoEntity> deleted;
         try{
-            // (2) 엔티티를 삭제한다.
-            repository.delete(entity);
+            // (2) 엔티티를 삭제한다. updateItem 과 같이 프라이머리에서 읽고, 다른 유저의 Todo 는 없는 것으로 취급한다.
+            deleted = shards.on(entity.getUserId().toString(), () -> {
+                final Optional<TodoEntity> original = readYourWrites.onPrimary(() -> repository.findById(entity.getId()))
+                        .filter(todo -> entity.getUserId().equals(todo.getUserId()));
+                original.ifPresent(repository::delete);
+                return original;
+            });
         }catch (Exception e){
             // (3) exception 발생 시 id와 exception을 로깅한다.
             log.error("error deleting entity ", entity.getId(), e);
@@ -120,7 +296,230 @@ public class TodoService {
             // (4) 컨트롤러로 exception을 날린다. 데이터베이스 내부 로직을 캡슐화 하기 위해 e를 리턴하지 않고 새 exception 오브젝트를 리턴한다.
             throw new RuntimeException("error deleting entity " + entity.getId());
         }
-        // (5) 새 Todo 리스트를 가져와 리턴한다.
-        return retrieve(entity.getUserId());
+        deleted.ifPresent(todo -> {
+            changed(todo.getUserId());
+            afterCommit(() -> searchIndex.remove(todo.getUserId().toString(), todo.getId()));
+            published(TodoEventDTO.DELETED, todo);
+        });
+        return deleted;
+    }
+
+    // 생성/수정/삭제가 섞인 변경 목록을 하나의 트랜잭션으로 반영한다.
+    // 수정/삭제 대상은 한 번의 쿼리로 가져오고, insert/update/delete 는 커밋 시점에 JDBC 배치로 나간다.
+    // 항목별 결과를 요청과 같은 순서로 리턴한다. 실패한 항목이 있어도 나머지는 반영된다.
+    @Timed("todo.service")
+    @Transactional
+    public List<TodoBatchResultDTO> batch(final String userId, final List<TodoBatchItemDTO> items){
+        // (1) 배치가 유효한지 확인한다.
+        if(userId == null){
+            log.warn("Unknown user.");
+            throw new RuntimeException("Unknown user.");
+        }
+        if(items == null || items.isEmpty()){
+            throw new RuntimeException("Batch cannot be empty.");
+        }
+        if(items.size() > MAX_BATCH_SIZE){
+            throw new RuntimeException("Batch cannot contain more than " + MAX_BATCH_SIZE + " items.");
+        }
+        // 트랜잭션은 이미 시작됐지만 커넥션은 첫 쿼리에서 가져오므로 여기서 정한 유저의 샤드로 간다.
+        return shards.on(userId, () -> applyBatch(userId, items));
+    }
+
+    private List<TodoBatchResultDTO> applyBatch(final String userId, final List<TodoBatchItemDTO> items){
+        // (2) 수정/삭제할 Todo 를 한 번에 가져온다. 다른 유저의 Todo 는 없는 것으로 취급한다.
+        final UUID user = TimeOrderedIds.parse(userId);
+        final Set<UUID> ids = items.stream()
+                .filter(item -> item != null && item.getTodo() != null)
+                .map(item -> TimeOrderedIds.tryParse(item.getTodo().getId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        // 배치의 변경이 버퍼의 예전 수정에 덮어쓰이지 않도록 버린다.
+        writeBuffer.discard(userId, ids);
+        final Map<UUID, TodoEntity> originals = repository.findAllById(ids).stream()
+                .filter(todo -> user.equals(todo.getUserId()))
+                .collect(Collectors.toMap(TodoEntity::getId, Function.identity()));
+
+        // (3) 항목별로 변경을 적용한다. 결과의 todo 는 id 가 채워진 뒤에 만들어야 하므로 엔티티를 따로 들고 있는다.
+        final List<TodoBatchResultDTO> results = new ArrayList<>(items.size());
+        final List<TodoEntity> resultEntities = new ArrayList<>(items.size());
+        final List<TodoEntity> created = new ArrayList<>();
+        final List<TodoEntity> deleted = new ArrayList<>();
+        for(TodoBatchItemDTO item : items){
+            final String op = item == null || item.getOp() == null ? null : item.getOp().toLowerCase(Locale.ROOT);
+            final TodoDTO dto = item == null ? null : item.getTodo();
+            String error = null;
+            TodoEntity entity = null;
+
+            if(dto == null){
+                error = "Todo cannot be null";
+            } else if("create".equals(op)){
+                // 생성 당시에는 id 가 없어야 하므로 넘어온 id 는 무시한다.
+                entity = TodoEntity.builder()
+                        .userId(user)
+                        .title(dto.getTitle())
+                        .done(dto.isDone())
+                        .build();
+                created.add(entity);
+            } else if("update".equals(op) || "delete".equals(op)){
+                final UUID id = TimeOrderedIds.tryParse(dto.getId());
+                entity = id == null ? null : originals.get(id);
+                if(entity == null){
+                    error = "Todo not found " + dto.getId();
+                } else if("update".equals(op)){
+                    // 영속 상태의 엔티티이므로 값만 바꾸면 커밋 시점에 update 된다.
+                    entity.setTitle(dto.getTitle());
+                    entity.setDone(dto.isDone());
+                } else {
+                    // 같은 배치 안에서 삭제된 Todo 를 다시 수정/삭제할 수 없도록 뺀다.
+                    originals.remove(entity.getId());
+                    deleted.add(entity);
+                }
+            } else {
+                error = "Unknown op " + op;
+            }
+
+            results.add(TodoBatchResultDTO.builder()
+                    .op(op)
+                    .status(error == null ? TodoBatchResultDTO.OK : TodoBatchResultDTO.ERROR)
+                    .error(error)
+                    .build());
+            resultEntities.add(entity);
+        }
+
+        // (4) 생성/삭제를 반영한다.
+        repository.saveAll(created);
+        repository.deleteAll(deleted);
+
+        for(int i = 0; i < results.size(); i++){
+            final TodoBatchResultDTO result = results.get(i);
+            if(TodoBatchResultDTO.OK.equals(result.getStatus())){
+                result.setTodo(new TodoDTO(resultEntities.get(i)));
+            }
+        }
+
+        log.debug("Batch of {} items applied for user {}.", items.size(), userId);
+        changed(userId);
+        // 검색 색인은 다음 검색 때 다시 만든다.
+        afterCommit(() -> searchIndex.invalidate(userId));
+        for(int i = 0; i < results.size(); i++){
+            if(TodoBatchResultDTO.OK.equals(results.get(i).getStatus())){
+                published(eventType(results.get(i).getOp()), resultEntities.get(i));
+            }
+        }
+        return results;
+    }
+
+    // items 를 모두 새 Todo 로 만든다. 넘어온 id 는 무시한다.
+    // IMPORT_CHUNK_SIZE 개씩 끊어서 덩어리마다 한 트랜잭션으로 저장하고, insert 는 JDBC 배치로 나간다(hibernate.jdbc.batch_size).
+    // items 를 하나씩 꺼내고 덩어리마다 영속성 컨텍스트를 비우므로 개수와 관계없이 메모리 사용량이 일정하다.
+    // 덩어리가 커밋될 때마다 지금까지 저장한 수를 progress 에 넘긴다. 도중에 실패하면 이미 커밋된 덩어리는 남는다.
+    @Timed("todo.service")
+    public int importItems(final String userId, final Iterator<TodoDTO> items, final IntConsumer progress){
+        if(userId == null){
+            log.warn("Unknown user.");
+            throw new RuntimeException("Unknown user.");
+        }
+        final UUID user = TimeOrderedIds.parse(userId);
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        final List<TodoEntity> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        int imported = 0;
+        while(items.hasNext()){
+            final TodoDTO dto = items.next();
+            if(dto == null){
+                throw new RuntimeException("Todo cannot be null");
+            }
+            chunk.add(TodoEntity.builder()
+                    .userId(user)
+                    .title(dto.getTitle())
+                    .done(dto.isDone())
+                    .build());
+            if(chunk.size() == IMPORT_CHUNK_SIZE){
+                imported += saveChunk(userId, chunk, transactionTemplate);
+                progress.accept(imported);
+            }
+        }
+        if(!chunk.isEmpty()){
+            imported += saveChunk(userId, chunk, transactionTemplate);
+            progress.accept(imported);
+        }
+        log.debug("{} todos imported for user {}.", imported, userId);
+        return imported;
+    }
+
+    // 덩어리 하나를 저장하고 비운다. 저장한 수를 리턴한다.
+    private int saveChunk(final String userId, final List<TodoEntity> chunk, final TransactionTemplate transactionTemplate){
+        shards.on(userId, () -> transactionTemplate.execute(status -> {
+            repository.saveAll(chunk);
+            // 요청 내내 같은 EntityManager 를 쓰므로(open-in-view) 비우지 않으면 저장한 엔티티가 계속 쌓인다.
+            entityManager.flush();
+            entityManager.clear();
+
+            changed(userId);
+            // 검색 색인은 다음 검색 때 다시 만든다. 구독 중인 클라이언트에게는 Todo 마다가 아니라 덩어리마다 한 번 알린다.
+            afterCommit(() -> {
+                searchIndex.invalidate(userId);
+                events.publish(userId, TodoEventDTO.builder()
+                        .type(TodoEventDTO.IMPORTED)
+                        .version(versions.current(userId))
+                        .build());
+            });
+            return null;
+        }));
+        final int saved = chunk.size();
+        chunk.clear();
+        return saved;
+    }
+
+    // 유저의 현재 Todo 리스트 버전
+    public long version(final String userId){
+        return versions.current(userId);
+    }
+
+    // 유저의 Todo 리스트가 바뀌었음을 기록하고 캐시를 비운다. 트랜잭션 안이라면 커밋된 뒤에 반영한다.
+    private void changed(final UUID userId){
+        changed(userId.toString());
+    }
+
+    private void changed(final String userId){
+        afterCommit(() -> {
+            readYourWrites.written(userId);
+            versions.increment(userId);
+            listCache.invalidate(userId);
+        });
+    }
+
+    // 커밋된 변경을 구독 중인 클라이언트에게 알린다 (GET /todo/events). changed 다음에 호출해야 올라간 버전이 실린다.
+    private void published(final String type, final TodoEntity entity){
+        final TodoDTO todo = new TodoDTO(entity);
+        final String userId = entity.getUserId().toString();
+        afterCommit(() -> events.publish(userId, TodoEventDTO.builder()
+                .type(type)
+                .todo(todo)
+                .version(versions.current(userId))
+                .build()));
+    }
+
+    private static String eventType(final String op){
+        switch(op){
+            case "create":
+                return TodoEventDTO.CREATED;
+            case "delete":
+                return TodoEventDTO.DELETED;
+            default:
+                return TodoEventDTO.UPDATED;
+        }
+    }
+
+    private void afterCommit(final Runnable action){
+        if(!TransactionSynchronizationManager.isSynchronizationActive()){
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 }
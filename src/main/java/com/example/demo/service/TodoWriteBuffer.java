@@ -0,0 +1,299 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.TodoDTO;
+import com.example.demo.dto.TodoEventDTO;
+import com.example.demo.model.TodoEntity;
+import com.example.demo.persistence.ReadYourWrites;
+import com.example.demo.persistence.ShardContext;
+import com.example.demo.persistence.TodoRepository;
+import com.example.demo.persistence.TodoShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Todo 수정(write-behind). todo.write-behind.enabled 가 true 면 TodoService.updateItem 이 데이터베이스 대신 이 버퍼에 넣는다.
+// 같은 Todo 에 대한 수정은 메모리에서 합쳐지고(마지막 값이 이긴다) flush-millis 마다 한 트랜잭션으로 반영된다.
+// 반영되기 전에도 같은 노드에서 읽는 유저 자신의 조회(retrieve, retrievePage, forEach)에는 버퍼의 값이 덮어씌워진다.
+// 존재와 주인은 TodoService 가 버퍼에 넣기 전에 확인한다. 그 사이에 삭제된 Todo 에 대한 수정은 반영할 때 버린다.
+// 애플리케이션이 내려갈 때 남은 것을 모두 반영한다.
+// 프로세스가 죽으면 반영되지 않은 수정은 사라진다. 그 위험 구간은 다음 메트릭으로 본다.
+//   todo.write-behind.pending           아직 반영되지 않은 Todo 수
+//   todo.write-behind.oldest.age        가장 오래 기다리고 있는 수정의 나이(초). 죽으면 잃는 최대 시간이다.
+//   todo.write-behind.latency           수정이 들어와서 커밋될 때까지 걸린 시간
+//   todo.write-behind.flush             한 번 반영하는 데 걸린 시간
+//   todo.write-behind.coalesced         반영되기 전에 합쳐진 수정 수
+// 대기 중인 수정이 max-pending 개를 넘으면 버퍼에 넣지 않고 지금처럼 바로 저장한다.
+@Slf4j
+@Component
+public class TodoWriteBuffer {
+    private final boolean enabled;
+    private final int maxPending;
+    private final TodoRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final TodoListVersions versions;
+    private final TodoListCache listCache;
+    private final TodoSearchIndex searchIndex;
+    private final TodoEventBroker events;
+    private final ReadYourWrites readYourWrites;
+    private final TodoShards shards;
+
+    // userId -> Todo id -> 대기 중인 수정
+    private final Map<String, Map<UUID, PendingUpdate>> pendingByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final Timer flushTimer;
+    private final Timer latencyTimer;
+    private final Counter coalesced;
+
+    public TodoWriteBuffer(@Value("${todo.write-behind.enabled:false}") boolean enabled,
+                           @Value("${todo.write-behind.max-pending:10000}") int maxPending,
+                           TodoRepository repository,
+                           PlatformTransactionManager transactionManager,
+                           TodoListVersions versions,
+                           TodoListCache listCache,
+                           TodoSearchIndex searchIndex,
+                           TodoEventBroker events,
+                           ReadYourWrites readYourWrites,
+                           TodoShards shards,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxPending = maxPending;
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.versions = versions;
+        this.listCache = listCache;
+        this.searchIndex = searchIndex;
+        this.events = events;
+        this.readYourWrites = readYourWrites;
+        this.shards = shards;
+
+        Gauge.builder("todo.write-behind.pending", pendingCount, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("todo.write-behind.oldest.age", this, TodoWriteBuffer::oldestAgeSeconds)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("todo.write-behind.flush").register(meterRegistry);
+        this.latencyTimer = Timer.builder("todo.write-behind.latency").publishPercentileHistogram().register(meterRegistry);
+        this.coalesced = meterRegistry.counter("todo.write-behind.coalesced");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 수정을 버퍼에 넣는다. 꺼져 있거나 버퍼가 가득 찼으면 false 를 리턴하고, 호출하는 쪽이 바로 저장해야 한다.
+    public boolean offer(final TodoEntity entity) {
+        if (!enabled || entity.getId() == null) {
+            return false;
+        }
+        final String userId = entity.getUserId().toString();
+        final PendingUpdate update = new PendingUpdate(entity.getId(), entity.getUserId(), entity.getTitle(), entity.isDone(), System.nanoTime());
+        final boolean[] accepted = {true};
+        pendingByUser.compute(userId, (key, pending) -> {
+            final Map<UUID, PendingUpdate> current = pending == null ? new ConcurrentHashMap<>() : pending;
+            final PendingUpdate previous = current.get(update.id);
+            if (previous != null) {
+                // 처음 들어온 시각은 유지한다. 위험 구간은 첫 수정부터 재기 때문이다.
+                current.put(update.id, update.since(previous.enqueuedAt));
+                coalesced.increment();
+            } else if (pendingCount.get() < maxPending) {
+                current.put(update.id, update);
+                pendingCount.incrementAndGet();
+            } else {
+                accepted[0] = false;
+            }
+            return current.isEmpty() ? null : current;
+        });
+        return accepted[0];
+    }
+
+    // 삭제되거나 배치로 바뀌는 Todo 의 대기 중인 수정을 버린다. 나중에 반영되면서 더 새로운 변경을 덮어쓰지 않도록 한다.
+    // flush 와 같은 모니터를 잡으므로, 이미 읽어간 수정을 반영 중인 flush 가 있으면 그 커밋이 끝날 때까지 기다린다.
+    // 호출하는 쪽은 이 메서드가 리턴한 뒤에 행을 읽고 써야 하고, 그 행의 락을 잡은 채로 부르면 안 된다.
+    public void discard(final String userId, final Collection<UUID> ids) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            pendingByUser.computeIfPresent(userId, (key, pending) -> {
+                for (UUID id : ids) {
+                    if (pending.remove(id) != null) {
+                        pendingCount.decrementAndGet();
+                    }
+                }
+                return pending.isEmpty() ? null : pending;
+            });
+        }
+    }
+
+    // 데이터베이스에서 읽은 리스트에 유저의 대기 중인 수정을 덮어씌운다. 원래 리스트와 엔티티는 바꾸지 않는다.
+    public List<TodoEntity> overlay(final String userId, final List<TodoEntity> entities) {
+        final Map<UUID, PendingUpdate> pending = enabled ? pendingByUser.get(userId) : null;
+        if (pending == null || pending.isEmpty()) {
+            return entities;
+        }
+        final List<TodoEntity> overlaid = new ArrayList<>(entities.size());
+        for (TodoEntity entity : entities) {
+            overlaid.add(overlay(pending, entity));
+        }
+        return overlaid;
+    }
+
+    public TodoEntity overlay(final TodoEntity entity) {
+        final Map<UUID, PendingUpdate> pending = enabled ? pendingByUser.get(entity.getUserId().toString()) : null;
+        return pending == null ? entity : overlay(pending, entity);
+    }
+
+    private static TodoEntity overlay(final Map<UUID, PendingUpdate> pending, final TodoEntity entity) {
+        final PendingUpdate update = pending.get(entity.getId());
+        if (update == null) {
+            return entity;
+        }
+        return TodoEntity.builder()
+                .id(entity.getId())
+                .userId(entity.getUserId())
+                .title(update.title)
+                .done(update.done)
+                .build();
+    }
+
+    // 대기 중인 수정을 한 트랜잭션으로 반영한다(샤딩 중이면 샤드마다 한 트랜잭션). 반영하는 동안 같은 Todo 에 새 수정이 들어오면 그것은 다음 차례에 반영된다.
+    @Scheduled(fixedDelayString = "${todo.write-behind.flush-millis:200}")
+    public synchronized void flush() {
+        if (!enabled || pendingCount.get() == 0) {
+            return;
+        }
+        // 샤드 번호 -> Todo id -> 대기 중인 수정. 샤딩하지 않으면 모두 0 번이다.
+        final Map<Integer, Map<UUID, PendingUpdate>> batches = new HashMap<>();
+        for (Map.Entry<String, Map<UUID, PendingUpdate>> pending : pendingByUser.entrySet()) {
+            batches.computeIfAbsent(shards.shardOf(pending.getKey()), shard -> new HashMap<>()).putAll(pending.getValue());
+        }
+
+        final long started = System.nanoTime();
+        final Map<UUID, PendingUpdate> batch = new HashMap<>();
+        final List<TodoEntity> applied = new ArrayList<>();
+        for (Map.Entry<Integer, Map<UUID, PendingUpdate>> shardBatch : batches.entrySet()) {
+            if (shardBatch.getValue().isEmpty()) {
+                continue;
+            }
+            // 한 샤드가 실패해도 나머지 샤드는 반영한다.
+            try {
+                applied.addAll(ShardContext.on(shardBatch.getKey(), () -> transactionTemplate.execute(status -> apply(shardBatch.getValue()))));
+                batch.putAll(shardBatch.getValue());
+            } catch (RuntimeException e) {
+                // 버퍼에 그대로 남겨두고 다음 차례에 다시 시도한다.
+                log.warn("Could not flush {} buffered todo updates on shard {}", shardBatch.getValue().size(), shardBatch.getKey(), e);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        final long committed = System.nanoTime();
+        flushTimer.record(committed - started, TimeUnit.NANOSECONDS);
+
+        // 반영한 것만 지운다. 그 사이에 새 값으로 바뀐 것은 남는다.
+        final Set<String> users = new HashSet<>();
+        for (PendingUpdate update : batch.values()) {
+            final String userId = update.userId.toString();
+            users.add(userId);
+            pendingByUser.computeIfPresent(userId, (key, pending) -> {
+                if (pending.remove(update.id, update)) {
+                    pendingCount.decrementAndGet();
+                    latencyTimer.record(committed - update.enqueuedAt, TimeUnit.NANOSECONDS);
+                }
+                return pending.isEmpty() ? null : pending;
+            });
+        }
+
+        // TodoService 가 커밋 후에 하는 일을 유저별로 한 번씩 한다.
+        for (String userId : users) {
+            readYourWrites.written(userId);
+            versions.increment(userId);
+            listCache.invalidate(userId);
+        }
+        for (TodoEntity todo : applied) {
+            final String userId = todo.getUserId().toString();
+            searchIndex.put(todo);
+            events.publish(userId, TodoEventDTO.builder()
+                    .type(TodoEventDTO.UPDATED)
+                    .todo(new TodoDTO(todo))
+                    .version(versions.current(userId))
+                    .build());
+        }
+    }
+
+    private List<TodoEntity> apply(final Map<UUID, PendingUpdate> batch) {
+        final List<TodoEntity> updated = new ArrayList<>();
+        for (TodoEntity todo : repository.findAllById(batch.keySet())) {
+            final PendingUpdate update = batch.get(todo.getId());
+            // 다른 유저의 Todo 는 수정하지 않는다.
+            if (!update.userId.equals(todo.getUserId())) {
+                continue;
+            }
+            // 영속 상태의 엔티티이므로 값만 바꾸면 커밋 시점에 update 된다.
+            todo.setTitle(update.title);
+            todo.setDone(update.done);
+            updated.add(todo);
+        }
+        return updated;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        if (pendingCount.get() > 0) {
+            log.error("{} buffered todo updates could not be flushed on shutdown", pendingCount.get());
+        }
+    }
+
+    private double oldestAgeSeconds() {
+        final long now = System.nanoTime();
+        long oldest = 0;
+        for (Map<UUID, PendingUpdate> pending : pendingByUser.values()) {
+            for (PendingUpdate update : pending.values()) {
+                oldest = Math.max(oldest, now - update.enqueuedAt);
+            }
+        }
+        return oldest / 1e9;
+    }
+
+    // 대기 중인 수정 하나. 합쳐질 때마다 새로 만들므로 flush 가 읽은 값과 같은지 참조로 비교할 수 있다.
+    private static final class PendingUpdate {
+        private final UUID id;
+        private final UUID userId;
+        private final String title;
+        private final boolean done;
+        private final long enqueuedAt;
+
+        private PendingUpdate(UUID id, UUID userId, String title, boolean done, long enqueuedAt) {
+            this.id = id;
+            this.userId = userId;
+            this.title = title;
+            this.done = done;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        private PendingUpdate since(final long enqueuedAt) {
+            return new PendingUpdate(id, userId, title, done, enqueuedAt);
+        }
+    }
+}
@@ -2,39 +2,87 @@ package com.example.demo.service;
 
 import com.example.demo.model.UserEntity;
 import com.example.demo.persistence.UserRepository;
+import com.example.demo.security.PasswordHasher;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Slf4j
 @Service
 public class UserService {
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private PasswordHasher passwordHasher;
+    @Autowired
+    private UsernameFilter usernameFilter;
 
+    @Timed("user.service")
     public UserEntity create(final UserEntity userEntity){
         if(userEntity == null || userEntity.getUsername() == null){
             throw new RuntimeException("Invalid arguments");
         }
         final String username = userEntity.getUsername();
-        if(userRepository.existsByUsername(username)){
+
+        // 존재 여부를 먼저 조회하지 않고 바로 insert 한다. 한 번의 왕복으로 끝나고,
+        // 동시에 같은 유저네임으로 가입해도 username 유니크 제약 때문에 하나만 성공한다.
+        try {
+            final UserEntity registeredUser = userRepository.saveAndFlush(userEntity);
+            usernameFilter.put(username);
+            return registeredUser;
+        } catch (DataIntegrityViolationException e) {
             log.warn("Username already exists {}", username);
             throw new RuntimeException("Username already exists");
         }
-
-        return userRepository.save(userEntity);
     }
 
-    public UserEntity getByCredentials(final String username, final String password, final PasswordEncoder encoder){
+    // 패스워드 검증은 PasswordHasher 의 스레드 풀에서 실행되므로 결과를 future 로 리턴한다.
+    // 일치하지 않으면 null 로 완료된다.
+    // 타이머는 future 가 완료될 때 멈추므로 BCrypt 검증 시간까지 포함된다.
+    @Timed("user.service")
+    public CompletableFuture<UserEntity> getByCredentials(final String username, final String password){
+        // 확실히 없는 유저네임이면 데이터베이스를 조회하지 않는다.
+        if(username == null || !usernameFilter.mightExist(username)){
+            return CompletableFuture.completedFuture(null);
+        }
         final UserEntity originalUser = userRepository.findByUsername(username);
 
-        // matches 메서드를 이용해 패스워드가 같은지 확인
-        if(originalUser != null && encoder.matches(password, originalUser.getPassword())){
-            return originalUser;
+        // OAuth 로 가입한 유저는 패스워드가 없다.
+        if(originalUser == null || password == null || originalUser.getPassword() == null){
+            return CompletableFuture.completedFuture(null);
         }
 
+        // matches 메서드를 이용해 패스워드가 같은지 확인
+        return passwordHasher.matches(password, originalUser.getPassword())
+                .thenCompose(matched -> {
+                    if(!matched){
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    if(!passwordHasher.needsRehash(originalUser.getPassword())){
+                        return CompletableFuture.completedFuture(originalUser);
+                    }
+                    return rehash(originalUser, password);
+                });
+
         // return userRepository.findByUsernameAndPassword(username, password);
-        return null;
+    }
+
+    // BCrypt cost 를 올린 뒤 예전 cost 로 저장된 패스워드를 로그인할 때 새 cost 로 다시 저장한다.
+    // 다시 해시하는 데 실패해도 로그인은 성공시킨다.
+    private CompletableFuture<UserEntity> rehash(final UserEntity user, final String password){
+        return passwordHasher.encode(password)
+                .thenApply(encoded -> {
+                    user.setPassword(encoded);
+                    log.info("Password of user {} is rehashed.", user.getUsername());
+                    return userRepository.save(user);
+                })
+                .exceptionally(e -> {
+                    log.warn("Could not rehash password of user {}", user.getUsername(), e);
+                    return user;
+                });
     }
 }
@@ -0,0 +1,67 @@
+package com.example.demo.service;
+
+import com.example.demo.persistence.UserRepository;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+// 존재하는 유저네임의 블룸 필터.
+// mightExist 가 false 면 그 유저네임은 확실히 없으므로 데이터베이스를 조회하지 않아도 된다. true 는 "있을 수도 있다"는 뜻이다.
+// 애플리케이션이 뜰 때 모든 유저네임을 읽어 채우고, 그 전까지는 항상 true 를 리턴한다.
+// 필터는 이 노드의 메모리에만 있어서 다른 노드에서 가입한 유저나 마이그레이션/SQL 로 넣은 유저는 알지 못한다.
+// 그런 유저는 "확실히 없다"고 판단되어 로그인이 거절되므로, 노드가 하나이고 유저가 이 애플리케이션으로만 생길 때만 켠다.
+// 기본은 꺼져 있다(user.username-filter.enabled). 꺼져 있으면 mightExist 는 항상 true 다.
+@Slf4j
+@Component
+public class UsernameFilter {
+    private final boolean enabled;
+    private final BloomFilter<String> filter;
+    private volatile boolean ready = false;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    public UsernameFilter(@Value("${user.username-filter.enabled:false}") boolean enabled,
+                          @Value("${user.username-filter.expected-insertions:1000000}") long expectedInsertions,
+                          @Value("${user.username-filter.fpp:0.01}") double fpp) {
+        this.enabled = enabled;
+        this.filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedInsertions, fpp);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        long count = 0;
+        try (Stream<String> usernames = userRepository.streamAllUsernames()) {
+            for (String username : (Iterable<String>) usernames::iterator) {
+                filter.put(username);
+                count++;
+            }
+        }
+        ready = true;
+        log.info("Username filter is ready with {} usernames.", count);
+    }
+
+    public boolean mightExist(final String username) {
+        return !enabled || !ready || filter.mightContain(username);
+    }
+
+    // 새로 가입한 유저네임을 추가한다.
+    public void put(final String username) {
+        if (enabled) {
+            filter.put(username);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+-- ddl-auto: update 가 만들던 스키마.
+-- 이미 테이블이 있는 데이터베이스는 baseline-on-migrate 로 이 버전을 건너뛴다.
+CREATE TABLE IF NOT EXISTS user_entity (
+    id            VARCHAR(255) NOT NULL,
+    auth_provider VARCHAR(255),
+    password      VARCHAR(255),
+    role          VARCHAR(255),
+    username      VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_user_entity_username UNIQUE (username)
+);
+
+CREATE TABLE IF NOT EXISTS todo (
+    id      VARCHAR(255) NOT NULL,
+    done    BOOLEAN      NOT NULL,
+    title   VARCHAR(255),
+    user_id VARCHAR(255),
+    PRIMARY KEY (id)
+);
@@ -0,0 +1,3 @@
+-- findByUserId 가 테이블 전체를 읽지 않도록 user_id 에 인덱스를 건다.
+-- id 까지 포함하므로 커서 페이지네이션(user_id = ? and id > ? order by id)도 인덱스 순서대로 읽는다.
+CREATE INDEX idx_todo_user_id_id ON todo (user_id, id);
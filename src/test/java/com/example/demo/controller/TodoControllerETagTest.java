@@ -0,0 +1,106 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.TimeOrderedIds;
+import com.example.demo.model.TodoEntity;
+import com.example.demo.model.UserEntity;
+import com.example.demo.persistence.TodoRepository;
+import com.example.demo.security.TokenProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+// GET /todo 의 ETag 와 If-None-Match 에 대한 304 응답을 확인한다.
+@SpringBootTest
+@AutoConfigureMockMvc
+class TodoControllerETagTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private TodoRepository todoRepository;
+    @Autowired
+    private TokenProvider tokenProvider;
+
+    private String token;
+    private TodoEntity todo;
+
+    @BeforeEach
+    void setUp() {
+        UUID userId = TimeOrderedIds.next();
+        token = tokenProvider.create(UserEntity.builder().id(userId).build());
+        todo = todoRepository.save(TodoEntity.builder().userId(userId).title("before").build());
+    }
+
+    @Test
+    void listCarriesETag() throws Exception {
+        MvcResult result = perform(list(null));
+
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        assertThat(result.getResponse().getHeader(HttpHeaders.ETAG)).matches("\"\\d+\"");
+        assertThat(result.getResponse().getContentAsString()).contains(todo.getId().toString());
+    }
+
+    @Test
+    void sameETagIsNotModified() throws Exception {
+        String eTag = perform(list(null)).getResponse().getHeader(HttpHeaders.ETAG);
+
+        MvcResult result = perform(list(eTag));
+
+        assertThat(result.getResponse().getStatus()).isEqualTo(304);
+        assertThat(result.getResponse().getHeader(HttpHeaders.ETAG)).isEqualTo(eTag);
+        assertThat(result.getResponse().getContentAsString()).isEmpty();
+    }
+
+    // 약한 비교를 하므로 W/ 가 붙어 있어도, 목록 중 하나만 같아도 304 다.
+    @Test
+    void weakAndListedETagsAreNotModified() throws Exception {
+        String eTag = perform(list(null)).getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertThat(perform(list("W/" + eTag)).getResponse().getStatus()).isEqualTo(304);
+        assertThat(perform(list("\"0\", " + eTag)).getResponse().getStatus()).isEqualTo(304);
+    }
+
+    @Test
+    void changeInvalidatesETag() throws Exception {
+        String eTag = perform(list(null)).getResponse().getHeader(HttpHeaders.ETAG);
+
+        perform(put("/todo")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .header("X-Response-Mode", "delta")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":\"" + todo.getId() + "\",\"title\":\"after\",\"done\":true}"));
+        MvcResult result = perform(list(eTag));
+
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        assertThat(result.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(eTag);
+        assertThat(result.getResponse().getContentAsString()).contains("after");
+    }
+
+    private RequestBuilder list(String ifNoneMatch) {
+        return ifNoneMatch == null
+                ? get("/todo").header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                : get("/todo").header(HttpHeaders.AUTHORIZATION, "Bearer " + token).header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+    }
+
+    // 컨트롤러는 CompletableFuture 를 리턴하므로 비동기 디스패치까지 마친 결과를 돌려준다.
+    private MvcResult perform(RequestBuilder builder) throws Exception {
+        MvcResult started = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started)).andReturn();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.TodoImportProgressDTO;
+import com.example.demo.model.TimeOrderedIds;
+import com.example.demo.model.UserEntity;
+import com.example.demo.persistence.TodoRepository;
+import com.example.demo.security.TokenProvider;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+// POST /todo/import 가 1000 개씩 커밋하면서 진행 상황을 한 줄씩 쓰고, 잘못된 줄에서 멈추는지 확인한다.
+@SpringBootTest
+@AutoConfigureMockMvc
+class TodoControllerImportTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private TodoRepository todoRepository;
+    @Autowired
+    private TokenProvider tokenProvider;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private UUID userId;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        userId = TimeOrderedIds.next();
+        token = tokenProvider.create(UserEntity.builder().id(userId).build());
+    }
+
+    @Test
+    void reportsProgressPerChunk() throws Exception {
+        List<TodoImportProgressDTO> lines = importTodos(todos(0, 2500));
+
+        assertThat(lines).extracting(TodoImportProgressDTO::getImported).containsExactly(1000, 2000, 2500, 2500);
+        assertThat(lines).extracting(TodoImportProgressDTO::isDone).containsExactly(false, false, false, true);
+        assertThat(lines.get(3).getError()).isNull();
+        assertThat(todoRepository.findByUserId(userId)).hasSize(2500);
+    }
+
+    // 잘못된 줄 앞의 덩어리는 커밋된 채로 남고, 덜 찬 덩어리는 버려진다.
+    @Test
+    void stopsAtMalformedLineAndKeepsCommittedChunks() throws Exception {
+        List<TodoImportProgressDTO> lines = importTodos(todos(0, 1500) + "{\"title\": oops}\n" + todos(1500, 10));
+
+        assertThat(lines).extracting(TodoImportProgressDTO::getImported).containsExactly(1000, 1000);
+        TodoImportProgressDTO last = lines.get(1);
+        assertThat(last.isDone()).isTrue();
+        assertThat(last.getError()).isNotBlank();
+        assertThat(todoRepository.findByUserId(userId)).hasSize(1000);
+    }
+
+    @Test
+    void reportsMalformedFirstToken() throws Exception {
+        List<TodoImportProgressDTO> lines = importTodos("oops\n");
+
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0).getImported()).isZero();
+        assertThat(lines.get(0).isDone()).isTrue();
+        assertThat(lines.get(0).getError()).isNotBlank();
+        assertThat(todoRepository.findByUserId(userId)).isEmpty();
+    }
+
+    private static String todos(int from, int count) {
+        StringBuilder body = new StringBuilder();
+        for (int i = from; i < from + count; i++) {
+            body.append("{\"title\":\"todo ").append(i).append("\",\"done\":").append(i % 2 == 0).append("}\n");
+        }
+        return body.toString();
+    }
+
+    private List<TodoImportProgressDTO> importTodos(String body) throws Exception {
+        MvcResult started = mockMvc.perform(post("/todo/import")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started)).andReturn();
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+
+        List<TodoImportProgressDTO> lines = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            if (!line.isBlank()) {
+                lines.add(objectMapper.readValue(line, TodoImportProgressDTO.class));
+            }
+        }
+        return lines;
+    }
+}
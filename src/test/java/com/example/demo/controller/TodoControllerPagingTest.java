@@ -0,0 +1,116 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.TimeOrderedIds;
+import com.example.demo.model.TodoEntity;
+import com.example.demo.model.UserEntity;
+import com.example.demo.persistence.TodoRepository;
+import com.example.demo.security.TokenProvider;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+// GET /todo?limit=&after= 의 커서 페이지네이션을 확인한다.
+@SpringBootTest
+@AutoConfigureMockMvc
+class TodoControllerPagingTest {
+    private static final int TODOS = 7;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private TodoRepository todoRepository;
+    @Autowired
+    private TokenProvider tokenProvider;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String token;
+    private final Set<String> ids = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        UUID userId = TimeOrderedIds.next();
+        token = tokenProvider.create(UserEntity.builder().id(userId).build());
+        for (int i = 0; i < TODOS; i++) {
+            ids.add(todoRepository.save(TodoEntity.builder().userId(userId).title("todo " + i).build()).getId().toString());
+        }
+    }
+
+    // 다음 커서를 따라가면 모든 Todo 를 한 번씩 받고, 마지막 페이지에는 커서가 없다.
+    @Test
+    void pagesCoverAllTodosOnce() throws Exception {
+        List<String> received = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        String after = null;
+        do {
+            MockHttpServletRequestBuilder builder = page().param("limit", "3");
+            if (after != null) {
+                builder.param("after", after);
+            }
+            JsonNode body = body(perform(builder));
+            sizes.add(body.get("data").size());
+            body.get("data").forEach(todo -> received.add(todo.get("id").asText()));
+            after = body.hasNonNull("next") ? body.get("next").asText() : null;
+        } while (after != null);
+
+        assertThat(sizes).containsExactly(3, 3, 1);
+        assertThat(received).doesNotHaveDuplicates();
+        assertThat(received).containsExactlyInAnyOrderElementsOf(ids);
+    }
+
+    @Test
+    void exactlyFullLastPageHasNoCursor() throws Exception {
+        JsonNode body = body(perform(page().param("limit", String.valueOf(TODOS))));
+
+        assertThat(body.get("data").size()).isEqualTo(TODOS);
+        assertThat(body.hasNonNull("next")).isFalse();
+    }
+
+    @Test
+    void limitOutOfBoundsIsBadRequest() throws Exception {
+        assertThat(perform(page().param("limit", "0")).getResponse().getStatus()).isEqualTo(400);
+        assertThat(perform(page().param("limit", "101")).getResponse().getStatus()).isEqualTo(400);
+    }
+
+    @Test
+    void malformedCursorIsBadRequest() throws Exception {
+        MvcResult result = perform(page().param("after", "not-a-cursor"));
+
+        assertThat(result.getResponse().getStatus()).isEqualTo(400);
+        assertThat(body(result).get("error").asText()).isEqualTo("Invalid cursor.");
+    }
+
+    private MockHttpServletRequestBuilder page() {
+        return get("/todo").header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    }
+
+    private JsonNode body(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private MvcResult perform(MockHttpServletRequestBuilder builder) throws Exception {
+        MvcResult started = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started)).andReturn();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.demo.controller;
+
+import com.example.demo.metrics.SqlStatementBudget;
+import com.example.demo.model.TimeOrderedIds;
+import com.example.demo.model.TodoEntity;
+import com.example.demo.model.UserEntity;
+import com.example.demo.persistence.TodoRepository;
+import com.example.demo.security.TokenProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Todo 수정 요청이 실행하는 SQL 문 수가 예산을 넘지 않는지 확인한다.
+// 예산을 올려야 한다면 쿼리가 왜 늘었는지 먼저 확인한다.
+@SpringBootTest
+@AutoConfigureMockMvc
+class TodoControllerSqlBudgetTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private TodoRepository todoRepository;
+    @Autowired
+    private TokenProvider tokenProvider;
+
+    private String token;
+    private TodoEntity todo;
+
+    @BeforeEach
+    void setUp() {
+        UUID userId = TimeOrderedIds.next();
+        token = tokenProvider.create(UserEntity.builder().id(userId).build());
+        todo = todoRepository.save(TodoEntity.builder().userId(userId).title("before").build());
+    }
+
+    // 수정할 Todo 조회, update, 리스트 조회
+    @Test
+    void updateTodoStaysWithinBudget() throws Exception {
+        MvcResult started = mockMvc.perform(put("/todo")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(SqlStatementBudget.atMost(3));
+    }
+
+    // delta 모드는 리스트를 다시 읽지 않는다.
+    @Test
+    void deltaUpdateTodoStaysWithinBudget() throws Exception {
+        MvcResult started = mockMvc.perform(put("/todo")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .header("X-Response-Mode", "delta")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(SqlStatementBudget.atMost(2));
+    }
+
+    private String body() {
+        return "{\"id\":\"" + todo.getId() + "\",\"title\":\"after\",\"done\":true}";
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TodoCursorTest {
+
+    @Test
+    void decodesWhatItEncodes() {
+        String id = UUID.randomUUID().toString();
+
+        assertThat(TodoCursor.decode(TodoCursor.encode(id))).isEqualTo(id);
+    }
+
+    // 쿼리 파라미터로 그대로 넘길 수 있어야 한다.
+    @Test
+    void cursorIsUrlSafe() {
+        assertThat(TodoCursor.encode(UUID.randomUUID().toString())).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertThatThrownBy(() -> TodoCursor.decode("not base64!")).hasMessage("Invalid cursor.");
+        assertThatThrownBy(() -> TodoCursor.decode(base64("other:123"))).hasMessage("Invalid cursor.");
+        assertThatThrownBy(() -> TodoCursor.decode(base64("todo:"))).hasMessage("Invalid cursor.");
+    }
+
+    private static String base64(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes());
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// decide 를 직접 호출해서 샘플링과 초당 한도를 확인한다. 시간은 고정한다.
+class SamplingTurboFilterTest {
+    private LoggerContext context;
+    private Logger logger;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        context = new LoggerContext();
+        logger = context.getLogger("com.example.demo.service.TodoService");
+        logger.setLevel(Level.INFO);
+        now = 1_000_000L;
+    }
+
+    @Test
+    void permitsAreLimitedPerSecond() {
+        SamplingTurboFilter filter = filter(1, 2);
+
+        assertThat(decide(filter, Level.INFO)).isEqualTo(FilterReply.NEUTRAL);
+        assertThat(decide(filter, Level.INFO)).isEqualTo(FilterReply.NEUTRAL);
+        assertThat(decide(filter, Level.INFO)).isEqualTo(FilterReply.DENY);
+
+        now += 1000;
+        assertThat(decide(filter, Level.INFO)).isEqualTo(FilterReply.NEUTRAL);
+    }
+
+    @Test
+    void onlyEveryNthEventIsKept() {
+        SamplingTurboFilter filter = filter(3, 0);
+
+        assertThat(decide(filter, Level.INFO)).isEqualTo(FilterReply.NEUTRAL);
+        assertThat(decide(filter, Level.INFO)).isEqualTo(FilterReply.DENY);
+        assertThat(decide(filter, Level.INFO)).isEqualTo(FilterReply.DENY);
+        assertThat(decide(filter, Level.INFO)).isEqualTo(FilterReply.NEUTRAL);
+    }
+
+    @Test
+    void eventsBelowLoggerLevelDoNotUseTheBudget() {
+        SamplingTurboFilter filter = filter(2, 1);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(decide(filter, Level.DEBUG)).isEqualTo(FilterReply.NEUTRAL);
+        }
+
+        assertThat(decide(filter, Level.INFO)).isEqualTo(FilterReply.NEUTRAL);
+    }
+
+    @Test
+    void warningsAndOtherLoggersAreNotLimited() {
+        SamplingTurboFilter filter = filter(1, 1);
+        Logger other = context.getLogger("com.example.demo.controller.TodoController");
+
+        assertThat(decide(filter, Level.INFO)).isEqualTo(FilterReply.NEUTRAL);
+        assertThat(decide(filter, Level.WARN)).isEqualTo(FilterReply.NEUTRAL);
+        assertThat(filter.decide(null, other, Level.INFO, "message", null, null)).isEqualTo(FilterReply.NEUTRAL);
+        assertThat(decide(filter, Level.INFO)).isEqualTo(FilterReply.DENY);
+    }
+
+    private FilterReply decide(SamplingTurboFilter filter, Level level) {
+        return filter.decide(null, logger, level, "message", null, null);
+    }
+
+    private SamplingTurboFilter filter(int sampleEvery, int permitsPerSecond) {
+        SamplingTurboFilter filter = new SamplingTurboFilter();
+        filter.setContext(context);
+        filter.setLoggerName("com.example.demo.service");
+        filter.setSampleEvery(sampleEvery);
+        filter.setPermitsPerSecond(permitsPerSecond);
+        filter.clock = () -> now;
+        filter.start();
+        return filter;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.demo.metrics;
+
+import org.springframework.test.web.servlet.ResultMatcher;
+
+// MockMvc 응답의 X-SQL-Statement-Count 헤더로 요청이 실행한 SQL 문 수를 검사한다.
+// 예: mockMvc.perform(asyncDispatch(result)).andExpect(SqlStatementBudget.atMost(3));
+public final class SqlStatementBudget {
+    private SqlStatementBudget() {
+    }
+
+    public static ResultMatcher atMost(final int budget) {
+        return result -> {
+            final String header = result.getResponse().getHeader(SqlStatementCountAdvice.HEADER);
+            if (header == null) {
+                throw new AssertionError("Response has no " + SqlStatementCountAdvice.HEADER + " header. Is sql.statement-count.header enabled?");
+            }
+            final int statements = Integer.parseInt(header);
+            if (statements > budget) {
+                throw new AssertionError(result.getRequest().getMethod() + " " + result.getRequest().getRequestURI()
+                        + " executed " + statements + " SQL statements, budget is " + budget);
+            }
+        };
+    }
+}
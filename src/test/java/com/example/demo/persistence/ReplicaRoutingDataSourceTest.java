@@ -0,0 +1,75 @@
+package com.example.demo.persistence;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 두 개의 H2 데이터베이스를 프라이머리와 레플리카로 두고 어느 쪽에서 읽는지 확인한다.
+class ReplicaRoutingDataSourceTest {
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+    private ReadYourWrites readYourWrites;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primary, Collections.singletonList(replica)));
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readYourWrites = new ReadYourWrites(true, 60);
+    }
+
+    @Test
+    void readWriteTransactionUsesPrimary() {
+        assertThat(readWrite.execute(status -> whereAmI())).isEqualTo("primary");
+    }
+
+    @Test
+    void readOnlyTransactionUsesReplica() {
+        assertThat(readOnly.execute(status -> whereAmI())).isEqualTo("replica");
+    }
+
+    @Test
+    void queryOutsideTransactionUsesPrimary() {
+        assertThat(whereAmI()).isEqualTo("primary");
+    }
+
+    @Test
+    void readAfterOwnWriteUsesPrimary() {
+        readYourWrites.written("writer");
+
+        assertThat(readYourWrites.read("writer", () -> readOnly.execute(status -> whereAmI()))).isEqualTo("primary");
+        assertThat(readYourWrites.read("someone-else", () -> readOnly.execute(status -> whereAmI()))).isEqualTo("replica");
+    }
+
+    private String whereAmI() {
+        return jdbcTemplate.queryForObject("SELECT name FROM marker", String.class);
+    }
+
+    // 이름이 다른 인메모리 데이터베이스를 만들고 자기 이름을 적어둔다.
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE marker (name VARCHAR(16))");
+        jdbcTemplate.update("INSERT INTO marker (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo.persistence;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 세 개의 H2 데이터베이스를 샤드로 두고 어느 샤드에서 읽는지 확인한다.
+class ShardRoutingDataSourceTest {
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private TodoShards shards;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = new LazyConnectionDataSourceProxy(
+                new ShardRoutingDataSource(Arrays.asList(database("shard-0"), database("shard-1"), database("shard-2"))));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        shards = new TodoShards(true, 3);
+    }
+
+    @Test
+    void queryWithoutShardUsesFirstShard() {
+        assertThat(whereAmI()).isEqualTo("shard-0");
+    }
+
+    @Test
+    void userQueriesUseTheUsersShard() {
+        String userId = UUID.randomUUID().toString();
+
+        assertThat(shards.on(userId, this::whereAmI)).isEqualTo("shard-" + shards.shardOf(userId));
+    }
+
+    @Test
+    void shardChosenInsideTransactionIsUsed() {
+        String userId = UUID.randomUUID().toString();
+
+        assertThat(transactionTemplate.execute(status -> shards.on(userId, this::whereAmI)))
+                .isEqualTo("shard-" + shards.shardOf(userId));
+    }
+
+    @Test
+    void addingShardOnlyMovesUsersToTheNewShard() {
+        for (int i = 0; i < 1000; i++) {
+            String userId = UUID.randomUUID().toString();
+            int before = TodoShards.shardOf(userId, 3);
+            int after = TodoShards.shardOf(userId, 4);
+
+            assertThat(after).isIn(before, 3);
+        }
+    }
+
+    private String whereAmI() {
+        return jdbcTemplate.queryForObject("SELECT name FROM marker", String.class);
+    }
+
+    // 이름이 다른 인메모리 데이터베이스를 만들고 자기 이름을 적어둔다.
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE marker (name VARCHAR(16))");
+        jdbcTemplate.update("INSERT INTO marker (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.demo.persistence;
+
+import com.example.demo.model.TimeOrderedIds;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Flyway 마이그레이션으로 만든 H2 스키마에서 findByUserId 가 인덱스를 타는지 확인한다.
+@DataJpaTest
+class TodoRepositoryIndexTest {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void findByUserIdUsesUserIdIndex() {
+        UUID[] users = new UUID[10];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = TimeOrderedIds.next();
+        }
+        for (int i = 0; i < 100; i++) {
+            jdbcTemplate.update("INSERT INTO todo (id, done, title, user_id) VALUES (?, FALSE, ?, ?)",
+                    bytes(TimeOrderedIds.next()), "title " + i, bytes(users[i % users.length]));
+        }
+
+        String plan = jdbcTemplate.queryForObject(
+                "EXPLAIN SELECT id, done, title, user_id FROM todo WHERE user_id = ?", String.class,
+                (Object) bytes(users[1]));
+
+        assertThat(plan).containsIgnoringCase("IDX_TODO_USER_ID_ID");
+    }
+
+    private static byte[] bytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.demo.persistence;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 세 개의 H2 데이터베이스 중 두 개를 쓰다가 세 개로 늘리는 과정을 확인한다.
+class TodoShardRebalancerTest {
+    private static final int USERS = 50;
+    private static final int TODOS_PER_USER = 3;
+
+    private ShardRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private final List<UUID> users = new ArrayList<>();
+    private long cutoff;
+
+    @BeforeEach
+    void setUp() {
+        routing = new ShardRoutingDataSource(Arrays.asList(database(), database(), database()));
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+
+        // 두 개로 나눴을 때의 샤드에 유저마다 Todo 를 넣는다.
+        for (int i = 0; i < USERS; i++) {
+            UUID userId = new UUID(0x0190_0000_0000_7000L, i);
+            users.add(userId);
+            ShardContext.on(TodoShards.shardOf(userId.toString(), 2), () -> {
+                for (int j = 0; j < TODOS_PER_USER; j++) {
+                    jdbcTemplate.update("INSERT INTO todo (id, done, title, user_id) VALUES (?, ?, ?, ?)",
+                            bytes(UUID.randomUUID()), false, "todo " + j, bytes(userId));
+                }
+                return null;
+            });
+        }
+        cutoff = System.currentTimeMillis() + 1;
+    }
+
+    @Test
+    void rebalanceCopiesOnlyUsersWhoseShardChanges() {
+        int moved = rebalancer(2).rebalance(3, cutoff);
+
+        assertThat(moved).isPositive();
+        for (UUID userId : users) {
+            int before = TodoShards.shardOf(userId.toString(), 2);
+            int after = TodoShards.shardOf(userId.toString(), 3);
+            assertThat(count(after, userId)).isEqualTo(TODOS_PER_USER);
+            // 원본은 정리하기 전까지 남아 있다.
+            assertThat(count(before, userId)).isEqualTo(TODOS_PER_USER);
+        }
+        assertThat(count(2)).isEqualTo(moved * TODOS_PER_USER);
+    }
+
+    @Test
+    void rebalanceCanBeRunAgain() {
+        TodoShardRebalancer rebalancer = rebalancer(2);
+        rebalancer.rebalance(3, cutoff);
+        int copied = count(2);
+
+        rebalancer.rebalance(3, cutoff);
+
+        assertThat(count(2)).isEqualTo(copied);
+    }
+
+    @Test
+    void purgeRefusesBeforeShardCountIsRaised() {
+        TodoShardRebalancer rebalancer = rebalancer(2);
+        rebalancer.rebalance(3, cutoff);
+        int total = count(0) + count(1) + count(2);
+
+        assertThatThrownBy(() -> rebalancer.purge(3)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> rebalancer.purge(2)).isInstanceOf(IllegalStateException.class);
+        assertThat(count(0) + count(1) + count(2)).isEqualTo(total);
+    }
+
+    @Test
+    void purgeAfterShardCountIsRaisedLeavesEachUserOnOneShard() {
+        int moved = rebalancer(2).rebalance(3, cutoff);
+
+        int purged = rebalancer(3).purge(3);
+
+        assertThat(purged).isEqualTo(moved);
+        for (UUID userId : users) {
+            int shard = TodoShards.shardOf(userId.toString(), 3);
+            for (int i = 0; i < 3; i++) {
+                assertThat(count(i, userId)).isEqualTo(i == shard ? TODOS_PER_USER : 0);
+            }
+        }
+    }
+
+    // cutoff 이후에 생긴 Todo 는 (2) 에서 옮기지 않고 (4) 에서 옮긴다.
+    // (3) 이후 새 샤드에서 지운 Todo 는 (4) 를 다시 실행해도 되살아나지 않는다.
+    @Test
+    void catchUpCopiesOnlyTodosCreatedAfterCutoff() {
+        UUID userId = movedUser();
+        int before = TodoShards.shardOf(userId.toString(), 2);
+        int after = TodoShards.shardOf(userId.toString(), 3);
+        rebalancer(2).rebalance(3, cutoff);
+        // (2) 와 (3) 사이에 예전 샤드에 생긴 Todo
+        UUID late = new UUID((cutoff << 16) | 0x7000L, 0x8000000000000000L);
+        insert(before, late, userId);
+        // (3) 이후 새 샤드에서 유저가 지운 Todo
+        UUID deleted = ids(after, userId).get(0);
+        ShardContext.on(after, () -> jdbcTemplate.update("DELETE FROM todo WHERE id = ?", (Object) bytes(deleted)));
+
+        TodoShardRebalancer rebalancer = rebalancer(3);
+        rebalancer.catchUp(3, cutoff);
+        rebalancer.catchUp(3, cutoff);
+
+        assertThat(ids(after, userId)).contains(late).doesNotContain(deleted).hasSize(TODOS_PER_USER);
+    }
+
+    @Test
+    void rebalanceSkipsTodosCreatedAfterCutoff() {
+        UUID userId = movedUser();
+        UUID late = new UUID((cutoff << 16) | 0x7000L, 0x8000000000000000L);
+        insert(TodoShards.shardOf(userId.toString(), 2), late, userId);
+
+        rebalancer(2).rebalance(3, cutoff);
+
+        assertThat(ids(TodoShards.shardOf(userId.toString(), 3), userId)).doesNotContain(late).hasSize(TODOS_PER_USER);
+    }
+
+    private UUID movedUser() {
+        return users.stream()
+                .filter(userId -> TodoShards.shardOf(userId.toString(), 2) != TodoShards.shardOf(userId.toString(), 3))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private void insert(int shard, UUID id, UUID userId) {
+        ShardContext.on(shard, () -> jdbcTemplate.update("INSERT INTO todo (id, done, title, user_id) VALUES (?, ?, ?, ?)",
+                bytes(id), false, "late", bytes(userId)));
+    }
+
+    private List<UUID> ids(int shard, UUID userId) {
+        return ShardContext.on(shard, () -> jdbcTemplate.query("SELECT id FROM todo WHERE user_id = ?", (rs, rowNum) -> {
+            ByteBuffer buffer = ByteBuffer.wrap(rs.getBytes(1));
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }, (Object) bytes(userId)));
+    }
+
+    private TodoShardRebalancer rebalancer(int shardCount) {
+        return new TodoShardRebalancer(jdbcTemplate, transactionManager, routing, new TodoShards(true, shardCount),
+                null, 0, false, 0);
+    }
+
+    private int count(int shard) {
+        return ShardContext.on(shard, () -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM todo", Integer.class));
+    }
+
+    private int count(int shard, UUID userId) {
+        return ShardContext.on(shard, () -> jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM todo WHERE user_id = ?", Integer.class, (Object) bytes(userId)));
+    }
+
+    private static byte[] bytes(UUID id) {
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+
+    // V3__binary_uuid_ids 의 todo 테이블과 같은 모양의 인메모리 데이터베이스
+    private static DataSource database() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:shard-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new JdbcTemplate(dataSource).execute("CREATE TABLE todo ("
+                + "id BINARY(16) NOT NULL, done BOOLEAN NOT NULL, title VARCHAR(255), user_id BINARY(16), PRIMARY KEY (id))");
+        return dataSource;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// GCRA 버킷을 스프링 없이 확인한다.
+class RateLimitFilterTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void allowsBurstThenRejectsWithRetryAfter() throws Exception {
+        // auth: 초당 1개, 버스트 3
+        RateLimitFilter filter = filter(true, 1, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(send(filter, "POST", "/auth/signin", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+        }
+        MockHttpServletResponse rejected = send(filter, "POST", "/auth/signin", "10.0.0.1");
+
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(rejected.getContentAsString()).contains("Too many requests");
+        assertThat(meterRegistry.counter("http.server.requests.rate-limited", "limit", "auth").count()).isEqualTo(1);
+        // 다른 IP 는 자기 버킷을 쓴다.
+        assertThat(send(filter, "POST", "/auth/signin", "10.0.0.2").getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void refillsAfterInterval() throws Exception {
+        // auth: 초당 20개(50ms 간격), 버스트 1
+        RateLimitFilter filter = filter(true, 20, 1);
+
+        assertThat(send(filter, "POST", "/auth/signin", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(send(filter, "POST", "/auth/signin", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+
+        Thread.sleep(60);
+
+        assertThat(send(filter, "POST", "/auth/signin", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void countsTodoByUserAndSeparatesReadFromWrite() throws Exception {
+        RateLimitFilter filter = new RateLimitFilter(true, 1000, 600, 1, 1, 1, 1, 1, 1);
+        wire(filter);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("user-1", null, AuthorityUtils.NO_AUTHORITIES));
+
+        assertThat(send(filter, "GET", "/todo", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+        // 같은 유저는 IP 가 바뀌어도 같은 버킷이다.
+        assertThat(send(filter, "GET", "/todo", "10.0.0.2").getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        // 쓰기는 읽기와 따로 센다.
+        assertThat(send(filter, "POST", "/todo", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(send(filter, "PUT", "/todo", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    @Test
+    void ignoresOtherPathsAndDisabledFilter() throws Exception {
+        RateLimitFilter filter = filter(true, 1, 1);
+        for (int i = 0; i < 5; i++) {
+            assertThat(send(filter, "GET", "/actuator/health", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+        }
+
+        RateLimitFilter disabled = filter(false, 1, 1);
+        for (int i = 0; i < 5; i++) {
+            assertThat(send(disabled, "POST", "/auth/signin", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+        }
+    }
+
+    private RateLimitFilter filter(boolean enabled, double authPerSecond, int authBurst) {
+        RateLimitFilter filter = new RateLimitFilter(enabled, 1000, 600, 20, 40, 5, 20, authPerSecond, authBurst);
+        wire(filter);
+        return filter;
+    }
+
+    private void wire(RateLimitFilter filter) {
+        ReflectionTestUtils.setField(filter, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+    }
+
+    private static MockHttpServletResponse send(RateLimitFilter filter, String method, String uri, String remoteAddr) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(remoteAddr);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
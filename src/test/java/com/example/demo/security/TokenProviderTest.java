@@ -0,0 +1,98 @@
+package com.example.demo.security;
+
+import com.example.demo.model.TimeOrderedIds;
+import com.example.demo.model.UserEntity;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 검증된 토큰 캐시를 확인한다. 스프링 없이 만든다.
+class TokenProviderTest {
+    // 전역 레지스트리는 하위 레지스트리가 없으면 숫자를 세지 않는다.
+    private static final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final TokenProvider tokenProvider = new TokenProvider();
+
+    @BeforeAll
+    static void addRegistry() {
+        Metrics.addRegistry(registry);
+    }
+
+    @AfterAll
+    static void removeRegistry() {
+        Metrics.removeRegistry(registry);
+    }
+
+    @Test
+    void secondValidationComesFromCache() {
+        UUID userId = TimeOrderedIds.next();
+        String token = tokenProvider.create(UserEntity.builder().id(userId).build());
+        double cachedBefore = cachedValidations();
+
+        assertThat(tokenProvider.validateAndGetUserId(token)).isEqualTo(userId.toString());
+        assertThat(tokenProvider.validateAndGetUserId(token)).isEqualTo(userId.toString());
+
+        assertThat(cachedValidations() - cachedBefore).isEqualTo(1);
+    }
+
+    // 캐시에 남아 있어도 exp 가 지나면 다시 검증해서 실패한다.
+    @Test
+    void cachedTokenExpiresWithItsExp() throws InterruptedException {
+        String token = tokenProvider.create(TimeOrderedIds.next().toString(), Date.from(Instant.now().plusSeconds(2)));
+        tokenProvider.validateAndGetUserId(token);
+        long expiresAt = tokenProvider.verify(token).getExpiration().getTime();
+
+        Thread.sleep(Math.max(0, expiresAt - System.currentTimeMillis()) + 50);
+
+        assertThatThrownBy(() -> tokenProvider.validateAndGetUserId(token)).isInstanceOf(ExpiredJwtException.class);
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        String token = tokenProvider.create(UserEntity.builder().id(TimeOrderedIds.next()).build());
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThatThrownBy(() -> tokenProvider.validateAndGetUserId(tampered)).isInstanceOf(RuntimeException.class);
+    }
+
+    // GET /todo/events 티켓은 이 노드에서 한 번만 쓸 수 있다.
+    @Test
+    void eventsTicketIsSingleUse() {
+        UUID userId = TimeOrderedIds.next();
+        String ticket = tokenProvider.createEventsTicket(userId.toString());
+
+        assertThat(tokenProvider.redeemEventsTicket(ticket)).isEqualTo(userId.toString());
+        assertThatThrownBy(() -> tokenProvider.redeemEventsTicket(ticket)).hasMessageContaining("already used");
+    }
+
+    // 티켓은 API 호출에, 액세스 토큰은 티켓으로 쓸 수 없다.
+    @Test
+    void eventsTicketAndAccessTokenAreNotInterchangeable() {
+        UUID userId = TimeOrderedIds.next();
+        String ticket = tokenProvider.createEventsTicket(userId.toString());
+        String token = tokenProvider.create(UserEntity.builder().id(userId).build());
+
+        assertThatThrownBy(() -> tokenProvider.validateAndGetUserId(ticket)).isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> tokenProvider.redeemEventsTicket(token)).hasMessageContaining("Not an events ticket");
+    }
+
+    private static double cachedValidations() {
+        return Metrics.globalRegistry.find("auth.jwt.validation")
+                .tag("result", "success")
+                .tag("source", "cache")
+                .counters()
+                .stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TodoSearchTokenizerTest {
+
+    @Test
+    void indexesLatinWordsAfterNfkcAndLowercase() {
+        // 전각 영문/숫자는 반각으로, 대문자는 소문자로 바뀌고 문장부호는 버린다.
+        assertThat(TodoSearchTokenizer.indexTerms("Buy ＧＲＯＣＥＲＩＥＳ, ２x!"))
+                .containsExactly("buy", "groceries", "2x");
+    }
+
+    @Test
+    void indexesHangulSyllablesAndBigrams() {
+        assertThat(TodoSearchTokenizer.indexTerms("장보기"))
+                .containsExactly("장", "장보", "보", "보기", "기");
+    }
+
+    @Test
+    void splitsMixedScriptsIntoSeparateRuns() {
+        assertThat(TodoSearchTokenizer.indexTerms("PR리뷰 v2"))
+                .containsExactly("pr", "리", "리뷰", "뷰", "v2");
+    }
+
+    @Test
+    void normalizesHalfwidthKatakana() {
+        // 반각 가타카나 "ｶﾞｽ" 는 NFKC 로 "ガス" 가 된다.
+        assertThat(TodoSearchTokenizer.indexTerms("ｶﾞｽ"))
+                .containsExactly("ガ", "ガス", "ス");
+    }
+
+    @Test
+    void queriesLatinByPrefixAndCjkByBigram() {
+        List<String> terms = describe(TodoSearchTokenizer.queryTerms("Gro 장보기"));
+
+        assertThat(terms).containsExactly("gro*", "장보", "보기");
+    }
+
+    @Test
+    void queriesSingleSyllableExactly() {
+        assertThat(describe(TodoSearchTokenizer.queryTerms("장"))).containsExactly("장");
+    }
+
+    @Test
+    void queryBigramsAreIndexed() {
+        // 검색어의 bigram 은 모두 같은 단어가 들어간 제목의 색인어에 있어야 한다.
+        assertThat(TodoSearchTokenizer.indexTerms("내일 장보기 가기"))
+                .containsAll(describe(TodoSearchTokenizer.queryTerms("장보기")));
+    }
+
+    @Test
+    void ignoresNullAndPunctuationOnly() {
+        assertThat(TodoSearchTokenizer.indexTerms(null)).isEmpty();
+        assertThat(TodoSearchTokenizer.queryTerms(" ,.!? ")).isEmpty();
+    }
+
+    private static List<String> describe(List<TodoSearchTokenizer.Term> terms) {
+        return terms.stream()
+                .map(term -> term.prefix ? term.text + "*" : term.text)
+                .collect(Collectors.toList());
+    }
+}
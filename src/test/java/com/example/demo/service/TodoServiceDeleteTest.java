@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import com.example.demo.model.TimeOrderedIds;
+import com.example.demo.model.TodoEntity;
+import com.example.demo.persistence.TodoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// deleteItem 은 updateItem 과 같이 다른 유저의 Todo 와 없는 Todo 를 없는 것으로 취급한다.
+@SpringBootTest
+class TodoServiceDeleteTest {
+    @Autowired
+    private TodoService todoService;
+    @Autowired
+    private TodoRepository todoRepository;
+
+    private UUID ownerId;
+    private TodoEntity todo;
+
+    @BeforeEach
+    void setUp() {
+        ownerId = TimeOrderedIds.next();
+        todo = todoRepository.save(TodoEntity.builder().userId(ownerId).title("mine").build());
+    }
+
+    @Test
+    void ownerDeletesTodo() {
+        long version = todoService.version(ownerId.toString());
+
+        assertThat(todoService.deleteItem(request(ownerId, todo.getId()))).hasValueSatisfying(
+                deleted -> assertThat(deleted.getTitle()).isEqualTo("mine"));
+
+        assertThat(todoRepository.findById(todo.getId())).isEmpty();
+        assertThat(todoService.version(ownerId.toString())).isGreaterThan(version);
+    }
+
+    @Test
+    void foreignDeleteLeavesTodoAndOwnerVersion() {
+        UUID otherId = TimeOrderedIds.next();
+        // 주인의 리스트를 캐시에 올려둔다.
+        assertThat(todoService.retrieve(ownerId.toString())).hasSize(1);
+        long ownerVersion = todoService.version(ownerId.toString());
+        long otherVersion = todoService.version(otherId.toString());
+
+        assertThat(todoService.deleteItem(request(otherId, todo.getId()))).isEmpty();
+
+        assertThat(todoRepository.findById(todo.getId())).isPresent();
+        assertThat(todoService.retrieve(ownerId.toString())).hasSize(1);
+        assertThat(todoService.version(ownerId.toString())).isEqualTo(ownerVersion);
+        assertThat(todoService.version(otherId.toString())).isEqualTo(otherVersion);
+    }
+
+    @Test
+    void missingIdIsNotDeleted() {
+        assertThat(todoService.deleteItem(request(ownerId, TimeOrderedIds.next()))).isEmpty();
+
+        assertThat(todoRepository.findById(todo.getId())).isPresent();
+    }
+
+    private static TodoEntity request(UUID userId, UUID id) {
+        return TodoEntity.builder().id(id).userId(userId).title("x").build();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.demo.service;
+
+import com.example.demo.model.TimeOrderedIds;
+import com.example.demo.model.TodoEntity;
+import com.example.demo.persistence.ReadYourWrites;
+import com.example.demo.persistence.TodoRepository;
+import com.example.demo.persistence.TodoShards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// 반영 중인 flush 와 discard 가 겹칠 때, discard 는 flush 가 커밋할 때까지 기다려야
+// 그 뒤의 삭제나 배치가 버퍼의 예전 값에 덮어쓰이지 않는다.
+class TodoWriteBufferConcurrencyTest {
+
+    @Test
+    void discardWaitsForInFlightFlushToCommit() throws Exception {
+        UUID userId = TimeOrderedIds.next();
+        UUID todoId = TimeOrderedIds.next();
+        List<String> events = new CopyOnWriteArrayList<>();
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // flush 가 수정할 행을 읽은 채로 멈추게 한다.
+        TodoRepository repository = mock(TodoRepository.class);
+        when(repository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            flushing.countDown();
+            assertThat(release.await(5, TimeUnit.SECONDS)).isTrue();
+            return Collections.singletonList(TodoEntity.builder().id(todoId).userId(userId).title("before").build());
+        });
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        doAnswer(invocation -> events.add("flush committed")).when(transactionManager).commit(any());
+
+        TodoWriteBuffer buffer = new TodoWriteBuffer(true, 100, repository, transactionManager,
+                mock(TodoListVersions.class), mock(TodoListCache.class), mock(TodoSearchIndex.class),
+                mock(TodoEventBroker.class), mock(ReadYourWrites.class), new TodoShards(false, 1),
+                new SimpleMeterRegistry());
+        assertThat(buffer.offer(TodoEntity.builder().id(todoId).userId(userId).title("buffered").build())).isTrue();
+
+        Thread flush = new Thread(buffer::flush);
+        flush.start();
+        assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Thread discard = new Thread(() -> {
+            buffer.discard(userId.toString(), Collections.singletonList(todoId));
+            events.add("discarded");
+        });
+        discard.start();
+        discard.join(200);
+        // flush 가 커밋하기 전에는 discard 가 끝나지 않는다.
+        assertThat(discard.isAlive()).isTrue();
+
+        release.countDown();
+        flush.join(5000);
+        discard.join(5000);
+
+        assertThat(events).containsExactly("flush committed", "discarded");
+        // 버퍼는 비었으므로 다음 flush 는 아무것도 하지 않는다.
+        buffer.flush();
+        verify(repository, times(1)).findAllById(anyIterable());
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.demo.service;
+
+import com.example.demo.model.TimeOrderedIds;
+import com.example.demo.model.TodoEntity;
+import com.example.demo.persistence.TodoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// write-behind 모드의 TodoService.updateItem 과 TodoWriteBuffer 를 확인한다.
+// 스케줄된 flush 가 끼어들지 않도록 간격을 길게 두고 flush 를 직접 부른다.
+@SpringBootTest(properties = {
+        "todo.write-behind.enabled=true",
+        "todo.write-behind.flush-millis=3600000"
+})
+class TodoWriteBufferTest {
+    @Autowired
+    private TodoService todoService;
+    @Autowired
+    private TodoWriteBuffer writeBuffer;
+    @Autowired
+    private TodoRepository todoRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private UUID userId;
+    private TodoEntity todo;
+
+    @BeforeEach
+    void setUp() {
+        userId = TimeOrderedIds.next();
+        todo = todoRepository.save(TodoEntity.builder().userId(userId).title("before").build());
+    }
+
+    @Test
+    void coalescesUpdatesUntilFlush() {
+        double coalescedBefore = meterRegistry.get("todo.write-behind.coalesced").counter().count();
+
+        assertThat(todoService.updateItem(update(userId, "first", false))).isPresent();
+        assertThat(todoService.updateItem(update(userId, "second", true))).isPresent();
+
+        // 반영 전: 데이터베이스는 그대로이고 유저 자신의 조회에는 마지막 값이 보인다.
+        assertThat(todoRepository.findById(todo.getId()).orElseThrow().getTitle()).isEqualTo("before");
+        assertThat(todoService.retrieve(userId.toString()))
+                .singleElement()
+                .satisfies(entity -> {
+                    assertThat(entity.getTitle()).isEqualTo("second");
+                    assertThat(entity.isDone()).isTrue();
+                });
+        assertThat(meterRegistry.get("todo.write-behind.coalesced").counter().count() - coalescedBefore).isEqualTo(1);
+
+        writeBuffer.flush();
+
+        TodoEntity saved = todoRepository.findById(todo.getId()).orElseThrow();
+        assertThat(saved.getTitle()).isEqualTo("second");
+        assertThat(saved.isDone()).isTrue();
+    }
+
+    // 검색도 반영되기 전의 수정을 보여준다.
+    @Test
+    void searchSeesPendingUpdate() {
+        // 색인을 먼저 만들어 둔다.
+        assertThat(todoService.search(userId.toString(), "before", 10)).hasSize(1);
+
+        assertThat(todoService.updateItem(update(userId, "groceries", true))).isPresent();
+
+        assertThat(todoService.search(userId.toString(), "before", 10)).isEmpty();
+        assertThat(todoService.search(userId.toString(), "gro", 10))
+                .singleElement()
+                .satisfies(entity -> assertThat(entity.isDone()).isTrue());
+    }
+
+    @Test
+    void rejectsMissingAndForeignIdsBeforeBuffering() {
+        UUID otherUserId = TimeOrderedIds.next();
+
+        assertThat(todoService.updateItem(update(otherUserId, "stolen", true))).isEmpty();
+        assertThat(todoService.updateItem(TodoEntity.builder().id(TimeOrderedIds.next()).userId(userId).title("missing").build())).isEmpty();
+
+        writeBuffer.flush();
+
+        assertThat(todoRepository.findById(todo.getId()).orElseThrow().getTitle()).isEqualTo("before");
+    }
+
+    // 버퍼에 직접 들어온 다른 유저의 수정도 반영할 때 다시 확인해서 버린다.
+    @Test
+    void flushSkipsForeignOwner() {
+        assertThat(writeBuffer.offer(update(TimeOrderedIds.next(), "stolen", true))).isTrue();
+
+        writeBuffer.flush();
+
+        assertThat(todoRepository.findById(todo.getId()).orElseThrow().getTitle()).isEqualTo("before");
+    }
+
+    @Test
+    void discardDropsPendingUpdate() {
+        assertThat(todoService.updateItem(update(userId, "discarded", true))).isPresent();
+
+        writeBuffer.discard(userId.toString(), Collections.singletonList(todo.getId()));
+        writeBuffer.flush();
+
+        assertThat(todoRepository.findById(todo.getId()).orElseThrow().getTitle()).isEqualTo("before");
+        assertThat(todoService.retrieve(userId.toString()))
+                .singleElement()
+                .satisfies(entity -> assertThat(entity.getTitle()).isEqualTo("before"));
+    }
+
+    @Test
+    void deleteDiscardsPendingUpdate() {
+        assertThat(todoService.updateItem(update(userId, "deleted", true))).isPresent();
+
+        todoService.deleteItem(TodoEntity.builder().id(todo.getId()).userId(userId).title("before").build());
+        writeBuffer.flush();
+
+        assertThat(todoRepository.findById(todo.getId())).isEmpty();
+    }
+
+    private TodoEntity update(UUID owner, String title, boolean done) {
+        return TodoEntity.builder().id(todo.getId()).userId(owner).title(title).done(done).build();
+    }
+}